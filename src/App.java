@@ -1,27 +1,82 @@
+import java.io.File;
 import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.LinkedBlockingQueue;
 
 import javax.swing.SwingUtilities;
 
 import com.ordersystem.controller.Consumer;
+import com.ordersystem.controller.FileOrderStore;
+import com.ordersystem.controller.InMemoryOrderStore;
+import com.ordersystem.controller.OrderExpiryWheel;
+import com.ordersystem.controller.OrderScheduler;
+import com.ordersystem.controller.OverloadPolicy;
 import com.ordersystem.controller.Producer;
+import com.ordersystem.controller.RingBufferQueue;
 import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.OrderStore;
 import com.ordersystem.view.OrderSystemUI;
 
 public class App {
     public static void main(String[] args) throws Exception {
         System.out.println("Hello, World!");
-        BlockingQueue<AbstractOrder> queue = new LinkedBlockingQueue<AbstractOrder>();
+        // 准入控制：佇列最多幾筆訂單，滿載時的處理方式（REJECT、BLOCK、SHED_LOWEST）
+        int capacity = Integer.getInteger("ordersystem.intake.capacity", 500);
+        OverloadPolicy overloadPolicy = OverloadPolicy.fromName(
+            System.getProperty("ordersystem.intake.policy", "REJECT"),
+            Long.getLong("ordersystem.intake.blockMillis", 500L));
 
-        Producer producer = new Producer(queue);
+        BlockingQueue<AbstractOrder> queue;
+        if("RING".equals(System.getProperty("ordersystem.queue"))) {
+            // 環狀緩衝區（先到先做），被取消的訂單在取出前仍佔用格子，所以保留兩倍容量
+            RingBufferQueue.WaitStrategy waitStrategy = RingBufferQueue.WaitStrategy.valueOf(
+                System.getProperty("ordersystem.queue.waitStrategy", "PARK"));
+            queue = new RingBufferQueue<AbstractOrder>(capacity * 2, waitStrategy);
+        } else {
+            // 排程策略，可用 -Dordersystem.scheduler=FIFO 改回先到先做
+            OrderScheduler scheduler = OrderScheduler.valueOf(System.getProperty("ordersystem.scheduler", "DEADLINE"));
+            queue = scheduler.newQueue();
+        }
+
+        Producer producer = new Producer(queue, capacity, overloadPolicy);
         Consumer consumer = new Consumer(queue, producer);
 
+        // 等待超過 24 小時的訂單由時間輪自動取消，必須在載入訂單之前建立才會排定還原的訂單
+        OrderExpiryWheel expiryWheel = new OrderExpiryWheel(producer, Long.getLong("ordersystem.expiry.tickMillis", 1000L), 4096);
+        expiryWheel.start();
+
+        // 批次製作：一批最多幾筆訂單；預設只合併已經在佇列中的訂單，
+        // 需要等待湊批時才用 -Dordersystem.kitchen.batchWindowMillis=N 設定等待時間
+        consumer.setBatchSize(Integer.getInteger("ordersystem.kitchen.batchSize", 8));
+        consumer.setBatchWindowMillis(Long.getLong("ordersystem.kitchen.batchWindowMillis", 0L));
+
+        // 廚房人員數量，可用 -Dordersystem.kitchen.workers=N 調整
+        consumer.start(Integer.getInteger("ordersystem.kitchen.workers", 2));
+
+        // 訂單儲存引擎，可用 -Dordersystem.store=journaled|mapped|memory 選擇
+        OrderStore orderStore = createOrderStore(System.getProperty("ordersystem.store", "mapped"),
+            new File(System.getProperty("ordersystem.store.dir", "orders")));
+
         SwingUtilities.invokeLater(new Runnable() {
             @Override
             public void run() {
-                OrderSystemUI orderSystemUI = new OrderSystemUI(producer, consumer);
+                OrderSystemUI orderSystemUI = new OrderSystemUI(producer, consumer, orderStore);
                 orderSystemUI.setVisible(true);
             }
         });
     }
+
+    private static OrderStore createOrderStore(String engine, File directory) {
+        switch(engine) {
+            case "journaled":
+                // 日誌加文字快照，快照方便人工檢查
+                return FileOrderStore.journaled(directory);
+            case "mapped":
+                // 日誌加二進位區段，讀取時使用記憶體映射
+                return FileOrderStore.mapped(directory);
+            case "memory":
+                // 不寫入檔案，關閉程式後訂單就消失，適合展示與測試
+                return new InMemoryOrderStore();
+            default:
+                throw new IllegalArgumentException("未知的訂單儲存引擎：" + engine + "（可用 journaled、mapped、memory）");
+        }
+    }
 }
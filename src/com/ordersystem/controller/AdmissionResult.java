@@ -0,0 +1,32 @@
+package com.ordersystem.controller;
+
+// 送出訂單的結果
+public enum AdmissionResult {
+  ACCEPTED(true, "已接受"),
+  ACCEPTED_AFTER_SHEDDING(true, "已接受，並取消了一筆優先順序較低的訂單"),
+  REJECTED_QUEUE_FULL(false, "目前訂單太多，請稍後再試"),
+  REJECTED_TIMEOUT(false, "等待廚房空位逾時，請稍後再試"),
+  REJECTED_LOWEST_PRIORITY(false, "目前訂單太多，這筆訂單的優先順序最低"),
+  REJECTED_DUPLICATE(false, "這筆訂單已經送出過了");
+
+  private final boolean accepted;
+  private final String reason;
+
+  AdmissionResult(boolean accepted, String reason) {
+    this.accepted = accepted;
+    this.reason = reason;
+  }
+
+  public boolean isAccepted() {
+    return this.accepted;
+  }
+
+  // 給使用者看的說明
+  public String getReason() {
+    return this.reason;
+  }
+}
+
+/*
+用途：Producer.submit 的回傳值，讓呼叫端知道訂單是否被接受以及原因。
+ */
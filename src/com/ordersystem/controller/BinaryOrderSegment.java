@@ -0,0 +1,363 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.MenuCatalog;
+import com.ordersystem.model.MenuItem;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/*
+檔案格式（版本 3）：
+  檔頭 16 bytes：magic(4) 版本(2) 旗標(2) 訂單數(4) 保留(4)
+  餐點字典：項目數(varint)，每個項目為 名稱長度(varint) 名稱 UTF-8 位元組 單價分(varint)
+  每筆訂單：編號(8) 建立時間 epoch 毫秒(8) 狀態(1) 項目數(varint)
+  每個項目：字典代碼(varint) 數量(varint)
+
+建立時間是 LocalDateTime，寫入時以系統時區（ZoneId.systemDefault()）換算成真正的 epoch 毫秒，
+讀取時再以系統時區換回牆上時間。
+版本 2 的格式相同，但把牆上時間當成 UTC 換算，讀取時仍以 UTC 解讀。
+版本 1 沒有字典，每個項目直接存 名稱長度(varint) 名稱 單價分(varint) 數量(varint)，時間同樣以 UTC 解讀，仍可讀取。
+ */
+public class BinaryOrderSegment {
+  private static final int MAGIC = 0x4F524453; // "ORDS"
+  private static final short VERSION_INLINE_ITEMS = 1; // 項目內嵌名稱與價格
+  private static final short VERSION_DICTIONARY = 2; // 項目以字典代碼表示，時間以 UTC 換算
+  private static final short VERSION_ZONED_TIME = 3; // 時間以系統時區換算成 epoch 毫秒
+  private static final int HEADER_SIZE = 16;
+  private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+  // 檔頭與餐點字典
+  private static class SegmentHeader {
+    private final int count; // 訂單數
+    private final MenuItem[] dictionary; // 版本 1 為 null
+    private final ZoneId zone; // 時間戳記換算用的時區
+
+    SegmentHeader(int count, MenuItem[] dictionary, ZoneId zone) {
+      this.count = count;
+      this.dictionary = dictionary;
+      this.zone = zone;
+    }
+  }
+
+  // 寫入二進位區段並同步到磁碟，回傳每筆訂單在檔案中的位移
+  public static long[] write(File file, List<Order> orders) throws IOException {
+    long[] offsets = new long[orders.size()];
+
+    try(FileChannel channel = FileChannel.open(file.toPath(),
+          StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+      // 固定長度的檔頭
+      output.writeInt(MAGIC);
+      output.writeShort(VERSION_ZONED_TIME);
+      output.writeShort(0);
+      output.writeInt(orders.size());
+      output.writeInt(0);
+
+      // 每種餐點在檔案中只存一次，訂單項目只存代碼
+      Map<MenuItem, Integer> codes = new LinkedHashMap<>();
+      for(Order order : orders) {
+        for(MenuItem item : order.getItems().keySet()) {
+          codes.putIfAbsent(item, codes.size());
+        }
+      }
+
+      writeVarint(output, codes.size());
+      for(MenuItem item : codes.keySet()) {
+        byte[] name = item.getName().getBytes(StandardCharsets.UTF_8);
+        writeVarint(output, name.length);
+        output.write(name);
+        writeVarint(output, item.getPriceCents());
+      }
+
+      for(int i = 0; i < orders.size(); i++) {
+        Order order = orders.get(i);
+        offsets[i] = output.size();
+
+        output.writeLong(order.getId());
+        output.writeLong(toEpochMillis(order.getTime()));
+        output.writeByte(order.getStatus().ordinal());
+
+        Map<MenuItem, Integer> items = order.getItems();
+        writeVarint(output, items.size());
+        for(Map.Entry<MenuItem, Integer> item : items.entrySet()) {
+          writeVarint(output, codes.get(item.getKey()));
+          writeVarint(output, item.getValue());
+        }
+      }
+
+      output.flush();
+      channel.force(true);
+    }
+
+    return offsets;
+  }
+
+  // 透過記憶體映射讀取整個區段
+  public static List<Order> read(File file) throws IOException {
+    List<Order> orders = new ArrayList<>();
+
+    try(OrderCursor cursor = open(file, OrderFilter.all())) {
+      while(cursor.hasNext()) {
+        orders.add(cursor.next());
+      }
+    } catch(UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    return orders;
+  }
+
+  // 開啟區段游標，不符合過濾條件的訂單會直接跳過餐點項目
+  public static OrderCursor open(File file, OrderFilter filter) throws IOException {
+    try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      long size = channel.size();
+      if(size > Integer.MAX_VALUE) {
+        throw new IOException("區段檔案過大：" + file.getName());
+      }
+
+      // 映射建立後即使關閉通道也仍然有效
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+      SegmentHeader header = readHeader(buffer, file);
+
+      return new SegmentCursor(file, buffer, header, header.count, filter);
+    }
+  }
+
+  // 讀取位移上的單一訂單，配合 OrderIndex 使用
+  public static Order readAt(File file, long offset) throws IOException {
+    try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      // 先讀檔頭取得餐點字典，再直接跳到訂單的位移
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      SegmentHeader header = readHeader(buffer, file);
+      buffer.position((int) offset);
+      SegmentCursor cursor = new SegmentCursor(file, buffer, header, 1, OrderFilter.all());
+
+      if(!cursor.hasNext()) {
+        throw new IOException("區段中找不到位移 " + offset + "：" + file.getName());
+      }
+
+      return cursor.next();
+    } catch(UncheckedIOException e) {
+      throw e.getCause();
+    }
+  }
+
+  // 掃描區段取得所有訂單編號與位移，用於重建索引
+  public static long[][] scanOffsets(File file) throws IOException {
+    try(FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+      MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+      SegmentHeader header = readHeader(buffer, file);
+      int count = header.count;
+
+      long[] ids = new long[count];
+      long[] offsets = new long[count];
+      SegmentCursor cursor = new SegmentCursor(file, buffer, header, count, new OrderFilter(EnumSet.noneOf(OrderStatus.class), null, null));
+
+      for(int i = 0; i < count; i++) {
+        offsets[i] = buffer.position();
+        ids[i] = buffer.getLong(buffer.position());
+        cursor.skipOrder();
+      }
+
+      return new long[][] { ids, offsets };
+    } catch(RuntimeException e) {
+      throw new IOException("區段檔案損毀：" + file.getName(), e);
+    }
+  }
+
+  // 驗證檔頭並讀取餐點字典，字典中的餐點對應到共用的 MenuItem
+  private static SegmentHeader readHeader(ByteBuffer buffer, File file) throws IOException {
+    if(buffer.remaining() < HEADER_SIZE || buffer.getInt() != MAGIC) {
+      throw new IOException("不是訂單區段檔案：" + file.getName());
+    }
+
+    short version = buffer.getShort();
+    if(version != VERSION_INLINE_ITEMS && version != VERSION_DICTIONARY && version != VERSION_ZONED_TIME) {
+      throw new IOException("不支援的區段版本 " + version + "：" + file.getName());
+    }
+
+    buffer.getShort(); // 旗標
+    int count = buffer.getInt();
+    buffer.getInt(); // 保留
+
+    // 版本 3 之前把牆上時間當成 UTC 存
+    ZoneId zone = version == VERSION_ZONED_TIME ? ZoneId.systemDefault() : ZoneOffset.UTC;
+
+    if(version == VERSION_INLINE_ITEMS) {
+      return new SegmentHeader(count, null, zone);
+    }
+
+    try {
+      MenuItem[] dictionary = new MenuItem[(int) readVarint(buffer)];
+      for(int i = 0; i < dictionary.length; i++) {
+        dictionary[i] = readMenuItem(buffer);
+      }
+
+      return new SegmentHeader(count, dictionary, zone);
+    } catch(RuntimeException e) {
+      throw new IOException("餐點字典損毀：" + file.getName(), e);
+    }
+  }
+
+  // 讀取名稱與單價，回傳共用的 MenuItem
+  private static MenuItem readMenuItem(ByteBuffer buffer) {
+    byte[] name = new byte[(int) readVarint(buffer)];
+    buffer.get(name);
+    long priceCents = readVarint(buffer);
+
+    return MenuCatalog.internCents(new String(name, StandardCharsets.UTF_8), priceCents);
+  }
+
+  private static class SegmentCursor implements OrderCursor {
+    private final File file;
+    private final ByteBuffer buffer;
+    private final MenuItem[] dictionary; // 版本 1 為 null
+    private final ZoneId zone;
+    private final OrderFilter filter;
+    private int remaining; // 尚未解碼的訂單數
+    private Order next; // 下一筆符合條件的訂單
+
+    SegmentCursor(File file, ByteBuffer buffer, SegmentHeader header, int count, OrderFilter filter) {
+      this.file = file;
+      this.buffer = buffer;
+      this.dictionary = header.dictionary;
+      this.zone = header.zone;
+      this.remaining = count;
+      this.filter = filter;
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        while(this.next == null && this.remaining > 0) {
+          this.remaining--;
+          this.next = readOrder();
+        }
+      } catch(RuntimeException e) {
+        this.remaining = 0;
+        throw new UncheckedIOException(new IOException("區段檔案損毀：" + this.file.getName(), e));
+      }
+
+      return this.next != null;
+    }
+
+    @Override
+    public Order next() {
+      if(!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      Order order = this.next;
+      this.next = null;
+      return order;
+    }
+
+    @Override
+    public void close() {
+      this.remaining = 0;
+      this.next = null;
+    }
+
+    // 跳過一筆訂單（過濾條件不接受任何狀態時 readOrder 不會解碼項目）
+    void skipOrder() {
+      readOrder();
+    }
+
+    // 先讀固定長度的欄位判斷條件，不符合時只移動位置，不建立任何物件
+    private Order readOrder() {
+      long id = this.buffer.getLong();
+      LocalDateTime time = fromEpochMillis(this.buffer.getLong(), this.zone);
+      OrderStatus status = STATUSES[this.buffer.get()];
+      int itemCount = (int) readVarint(this.buffer);
+
+      if(!this.filter.matches(status, time)) {
+        for(int i = 0; i < itemCount; i++) {
+          if(this.dictionary == null) {
+            int nameLength = (int) readVarint(this.buffer);
+            this.buffer.position(this.buffer.position() + nameLength);
+          }
+          readVarint(this.buffer);
+          readVarint(this.buffer);
+        }
+
+        return null;
+      }
+
+      Order order = new Order(id);
+      order.setTime(time);
+      order.restoreStatus(status);
+
+      for(int i = 0; i < itemCount; i++) {
+        MenuItem item = this.dictionary == null ? readMenuItem(this.buffer) : this.dictionary[(int) readVarint(this.buffer)];
+        int quantity = (int) readVarint(this.buffer);
+
+        order.addItem(item, quantity);
+      }
+
+      return order;
+    }
+  }
+
+  private static void writeVarint(DataOutputStream output, long value) throws IOException {
+    while((value & ~0x7FL) != 0) {
+      output.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    output.writeByte((int) value);
+  }
+
+  private static long readVarint(ByteBuffer buffer) {
+    long value = 0;
+    int shift = 0;
+
+    while(true) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+
+      if((b & 0x80) == 0) {
+        return value;
+      }
+
+      shift += 7;
+      if(shift > 63) {
+        throw new IllegalArgumentException("varint 過長");
+      }
+    }
+  }
+
+  // 訂單時間是系統時區的牆上時間，換算成真正的 epoch 毫秒
+  private static long toEpochMillis(LocalDateTime time) {
+    return time.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+  }
+
+  private static LocalDateTime fromEpochMillis(long millis, ZoneId zone) {
+    return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), zone);
+  }
+}
+
+/*
+用途：訂單快照的二進位儲存格式，是文字格式之外的另一個後端。
+固定長度的檔頭、每個檔案一份餐點字典、以代碼表示的 varint 項目、epoch 毫秒的時間戳記。
+讀取使用 FileChannel.map，不需要逐行切字串與解析日期，餐點名稱含有 "-" 也不會出錯。
+ */
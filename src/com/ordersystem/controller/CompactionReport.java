@@ -0,0 +1,74 @@
+package com.ordersystem.controller;
+
+public class CompactionReport {
+  private final int filesCompacted; // 被合併的快照數
+  private final int filesWritten; // 新產生的區段數
+  private final long recordsRead; // 讀取的紀錄總數（含重複）
+  private final long ordersKept; // 合併後保留的訂單數
+  private final long ordersDropped; // 依保留規則丟棄的訂單數
+  private final long bytesBefore; // 合併前的檔案大小
+  private final long bytesAfter; // 合併後的檔案大小
+  private final long elapsedMillis; // 壓縮耗時
+
+  public CompactionReport(int filesCompacted, int filesWritten, long recordsRead, long ordersKept,
+      long ordersDropped, long bytesBefore, long bytesAfter, long elapsedMillis) {
+    this.filesCompacted = filesCompacted;
+    this.filesWritten = filesWritten;
+    this.recordsRead = recordsRead;
+    this.ordersKept = ordersKept;
+    this.ordersDropped = ordersDropped;
+    this.bytesBefore = bytesBefore;
+    this.bytesAfter = bytesAfter;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  // 沒有做任何事的結果
+  public static CompactionReport empty() {
+    return new CompactionReport(0, 0, 0, 0, 0, 0, 0, 0);
+  }
+
+  public int getFilesCompacted() {
+    return this.filesCompacted;
+  }
+
+  public int getFilesWritten() {
+    return this.filesWritten;
+  }
+
+  public long getRecordsRead() {
+    return this.recordsRead;
+  }
+
+  public long getOrdersKept() {
+    return this.ordersKept;
+  }
+
+  public long getOrdersDropped() {
+    return this.ordersDropped;
+  }
+
+  public long getBytesReclaimed() {
+    return this.bytesBefore - this.bytesAfter;
+  }
+
+  public long getElapsedMillis() {
+    return this.elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("合併 %d 個快照為 %d 個區段，讀取 %d 筆紀錄，保留 %d 筆、丟棄 %d 筆訂單，釋放 %d bytes，耗時 %d ms",
+      this.filesCompacted,
+      this.filesWritten,
+      this.recordsRead,
+      this.ordersKept,
+      this.ordersDropped,
+      getBytesReclaimed(),
+      this.elapsedMillis
+    );
+  }
+}
+
+/*
+用途：記錄一次壓縮的結果，包含釋放的磁碟空間。
+ */
@@ -4,138 +4,435 @@ import com.ordersystem.model.AbstractConsumer;
 import com.ordersystem.model.AbstractOrder;
 import com.ordersystem.model.Order;
 import com.ordersystem.model.OrderStatus;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumSet;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 public class Consumer extends AbstractConsumer implements Runnable {
+  private static final long DEFAULT_COOK_MILLIS = 3000; // 每批訂單的製作時間
+  private static final int DEFAULT_BATCH_SIZE = 8; // 一批最多幾筆訂單
+  private static final long DEFAULT_BATCH_WINDOW_MILLIS = 0; // 取得第一筆後，最多再等多久湊成一批；0 表示只合併已經在佇列中的訂單
+
   private BlockingQueue<AbstractOrder> queue; // 訂單佇列
   private final Producer producer; // 參考生產者
-  private volatile boolean processingEnabled = false; // 處理開關
+  private final ReentrantLock releaseLock = new ReentrantLock(); // 保護放行額度
+  private final Condition released = releaseLock.newCondition(); // 有新的放行額度時通知廚房人員
+  private volatile int releasedOrders = 0; // 已放行但尚未開始製作的訂單數
+  private final List<KitchenWorker> workers = new CopyOnWriteArrayList<>(); // 廚房人員
+  private final List<OrderCompletionListener> completionListeners = new CopyOnWriteArrayList<>();
+  private volatile long cookMillis = DEFAULT_COOK_MILLIS;
+  private volatile int batchSize = DEFAULT_BATCH_SIZE;
+  private volatile long batchWindowMillis = DEFAULT_BATCH_WINDOW_MILLIS;
+  private final LatencyHistogram waitTimes = new LatencyHistogram(); // 從下單到開始製作的等待時間
+  private final Map<Long, CookingBatch> inFlight = new ConcurrentHashMap<>(); // 製作中的訂單編號 → 所在的批次
+  private final LatencyHistogram cancellationLatency = new LatencyHistogram(); // 從整批最後一筆取消到廚房人員停止製作
+  private final LongAdder cancelledInFlightCount = new LongAdder(); // 製作中被取消的訂單數
+  private final LongAdder reclaimedCookNanos = new LongAdder(); // 因為提早停止而省下的製作時間
+  private ExecutorService kitchen; // 廚房人員的執行緒
 
   public Consumer(BlockingQueue<AbstractOrder> queue, Producer producer) {
-    super();
+    super(producer.getOrderBook()); // 與生產者共享同一份訂單簿
     this.queue = queue;
     this.producer = producer;
 
-    // 與生產者共享同一份訂單列表
-    this.orders = producer.getTotalOrders();
+    // 製作中的訂單被取消時通知所在的批次
+    producer.getEventBus().subscribe(EnumSet.of(OrderEvent.Type.CANCELLED), this::onOrdersCancelled);
+  }
+
+  // 啟動指定數量的廚房人員，同時從訂單佇列取單
+  public synchronized void start(int workerCount) {
+    if(this.kitchen != null) {
+      return;
+    }
+
+    this.kitchen = Executors.newFixedThreadPool(workerCount, new ThreadFactory() {
+      private int nextIndex = 0;
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "kitchen-worker-" + nextIndex++);
+        thread.setDaemon(true);
+        return thread;
+      }
+    });
+
+    for(int i = 0; i < workerCount; i++) {
+      KitchenWorker worker = new KitchenWorker(i, this);
+      this.workers.add(worker);
+      this.kitchen.execute(worker);
+    }
   }
 
-  // 執行緒的運行邏輯
+  // 停止所有廚房人員，製作中的訂單保持處理中，下次啟動時還原
+  public synchronized void stop() {
+    if(this.kitchen != null) {
+      this.kitchen.shutdownNow();
+      this.kitchen = null;
+    }
+  }
+
+  // 在目前的執行緒上當作一名廚房人員運行
   @Override
   public void run() {
+    KitchenWorker worker = new KitchenWorker(this.workers.size(), this);
+    this.workers.add(worker);
+    worker.run();
+  }
+
+  // 等待放行後取出下一筆可以製作的訂單，並轉換為處理中
+  AbstractOrder takeNextOrder() throws InterruptedException {
+    // 等待直到處理被啟動，閒置時停在 Condition 上不耗用 CPU
+    acquireRelease();
+
+    while(true) {
+      // 從訂單佇列中取得新的訂單，已取消的訂單略過，放行額度留給下一筆
+      AbstractOrder order = this.queue.take();
+      if(claim(order)) {
+        return order;
+      }
+    }
+  }
+
+  // 取出下一批訂單：先等到一筆放行的訂單，再在批次時間內收集其他已放行的訂單
+  CookingBatch takeNextBatch() throws InterruptedException {
+    List<AbstractOrder> batch = new ArrayList<>();
+    batch.add(takeNextOrder());
+
+    long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(this.batchWindowMillis);
+    List<AbstractOrder> drained = new ArrayList<>();
+
+    while(batch.size() < this.batchSize) {
+      int releases = acquireReleases(this.batchSize - batch.size(), deadline - System.nanoTime());
+      if(releases == 0) {
+        break;
+      }
+
+      // 一次取出佇列中已經在等待的訂單
+      drained.clear();
+      this.queue.drainTo(drained, releases);
+      for(AbstractOrder order : drained) {
+        if(claim(order)) {
+          batch.add(order);
+          releases--;
+        }
+      }
+
+      // 佇列暫時不夠，在剩下的時間內逐筆等待
+      while(releases > 0) {
+        AbstractOrder order = this.queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS);
+        if(order == null) {
+          break;
+        }
+
+        if(claim(order)) {
+          batch.add(order);
+          releases--;
+        }
+      }
+
+      // 沒用到的放行額度還回去，讓其他廚房人員使用
+      if(releases > 0) {
+        returnReleases(releases);
+        break;
+      }
+    }
+
+    return new CookingBatch(batch);
+  }
+
+  // 認領佇列取出的訂單並轉換為處理中，已取消或型別錯誤時回傳 false
+  private boolean claim(AbstractOrder order) {
+    // 訂單已離開佇列，歸還准入空位（已取消的訂單在取消時已經歸還）
+    this.producer.releaseIntake(order);
+
+    try {
+      Order concreteOrder = (Order) order;
+
+      // 如果訂單不在訂單簿中，則加入（已存在時不會重複加入）
+      this.orders.add(concreteOrder);
+    } catch(ClassCastException e) {
+      System.err.println("錯誤的order型別" + e.getMessage());
+      return false;
+    }
+
+    // 還原的處理中訂單直接繼續製作
+    if(order.getStatus() == OrderStatus.PROCESSING) {
+      return true;
+    }
+
+    if(processOrder(order.getId())) {
+      this.waitTimes.record(order.getStatusNanos(OrderStatus.PROCESSING) - order.getStatusNanos(OrderStatus.WAITING));
+      return true;
+    }
+
+    return false;
+  }
+
+  private void acquireRelease() throws InterruptedException {
+    releaseLock.lock();
+    try {
+      while(this.releasedOrders == 0) {
+        this.released.await();
+      }
+
+      this.releasedOrders--;
+    } finally {
+      releaseLock.unlock();
+    }
+  }
+
+  // 最多等待 timeoutNanos 取得放行額度，回傳取得的數量（最多 max）
+  private int acquireReleases(int max, long timeoutNanos) throws InterruptedException {
+    releaseLock.lock();
     try {
-      while(!Thread.currentThread().isInterrupted()) {
-        // 從訂單佇列中取得新的訂單
-        AbstractOrder order = this.queue.take();
-
-        try {
-          Order concreteOrder = (Order) order;
-
-          // 如果訂單不在追蹤訂單列表中，則加入
-          if(!this.orders.contains(concreteOrder)) {
-            this.orders.add(concreteOrder);
-          }
-
-          // 等待直到處理被啟動
-          while(!processingEnabled) {
-            Thread.sleep(1000);
-          }
-
-          // 處理後重置標記
-          processingEnabled = false;
-        } catch(ClassCastException e) {
-          System.err.println("錯誤的order型別" + e.getMessage());
+      long remaining = timeoutNanos;
+      while(this.releasedOrders == 0) {
+        if(remaining <= 0) {
+          return 0;
         }
+        remaining = this.released.awaitNanos(remaining);
       }
-    } catch(InterruptedException e) {
-      e.printStackTrace();
-      Thread.currentThread().interrupt();
+
+      int acquired = Math.min(max, this.releasedOrders);
+      this.releasedOrders -= acquired;
+      return acquired;
+    } finally {
+      releaseLock.unlock();
     }
   }
 
-  // 啟動處理
+  private void returnReleases(int releases) {
+    releaseLock.lock();
+    try {
+      this.releasedOrders += releases;
+      this.released.signalAll();
+    } finally {
+      releaseLock.unlock();
+    }
+  }
+
+  // 啟動處理：放行一筆訂單，立即喚醒一位等待中的廚房人員
   public void startProcessing() {
-    this.processingEnabled = true;
+    releaseLock.lock();
+    try {
+      this.releasedOrders++;
+      this.released.signal();
+    } finally {
+      releaseLock.unlock();
+    }
+  }
+
+  // 開始製作一批訂單，之後取消其中的訂單會通知這一批
+  void beginCooking(CookingBatch batch) {
+    for(AbstractOrder order : batch.getOrders()) {
+      this.inFlight.put(order.getId(), batch);
+    }
+
+    // 認領之後、登記之前就被取消的訂單，取消通知找不到批次，在這裡補上
+    for(AbstractOrder order : batch.getOrders()) {
+      if(order.getStatus() == OrderStatus.CANCELLED && this.inFlight.remove(order.getId(), batch)) {
+        this.cancelledInFlightCount.increment();
+        batch.orderCancelled();
+      }
+    }
+  }
+
+  void endCooking(CookingBatch batch) {
+    for(AbstractOrder order : batch.getOrders()) {
+      this.inFlight.remove(order.getId(), batch);
+    }
+  }
+
+  private void onOrdersCancelled(List<OrderEvent> events) {
+    for(OrderEvent event : events) {
+      // 由 remove 決定誰通知批次，同一筆訂單只會通知一次
+      CookingBatch batch = this.inFlight.remove(event.getOrder().getId());
+      if(batch != null) {
+        this.cancelledInFlightCount.increment();
+        batch.orderCancelled();
+      }
+    }
+  }
+
+  // 整批都被取消，廚房人員提早停止製作
+  void batchCancelled(CookingBatch batch, long remainingNanos) {
+    long lastCancelledNanos = 0;
+    for(AbstractOrder order : batch.getOrders()) {
+      lastCancelledNanos = Math.max(lastCancelledNanos, order.getStatusNanos(OrderStatus.CANCELLED));
+    }
+
+    this.cancellationLatency.record(System.nanoTime() - lastCancelledNanos);
+    this.reclaimedCookNanos.add(Math.max(0, remainingNanos));
+  }
+
+  // 已放行但尚未開始製作的訂單數
+  public int getReleasedOrderCount() {
+    return this.releasedOrders;
+  }
+
+  // 繼續製作還原時處理中的訂單
+  public void resumeProcessing(Order order) {
+    setProcessingOrder(order);
+    this.producer.enqueueRestored(order);
+    startProcessing();
+  }
+
+  public void addCompletionListener(OrderCompletionListener listener) {
+    this.completionListeners.add(listener);
+  }
+
+  void fireOrderCompleted(AbstractOrder order, KitchenWorker worker) {
+    for(OrderCompletionListener listener : this.completionListeners) {
+      listener.orderCompleted(order, worker);
+    }
+  }
+
+  // 與生產者共用同一個事件匯流排
+  public OrderEventBus getEventBus() {
+    return this.producer.getEventBus();
+  }
+
+  public List<KitchenWorker> getWorkers() {
+    return Collections.unmodifiableList(this.workers);
+  }
+
+  // 沒有在製作訂單的廚房人員數
+  public int getIdleWorkerCount() {
+    int idle = 0;
+
+    for(KitchenWorker worker : this.workers) {
+      if(!worker.isBusy()) {
+        idle++;
+      }
+    }
+
+    return idle;
+  }
+
+  // 等待時間的分布（p50 / p95 / p99）
+  public LatencyHistogram getWaitTimes() {
+    return this.waitTimes;
+  }
+
+  // 從取消到廚房人員停止製作的延遲分布
+  public LatencyHistogram getCancellationLatency() {
+    return this.cancellationLatency;
+  }
+
+  public long getCancelledInFlightCount() {
+    return this.cancelledInFlightCount.sum();
+  }
+
+  // 因為取消而省下的製作時間（毫秒）
+  public long getReclaimedCookMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(this.reclaimedCookNanos.sum());
+  }
+
+  public int getBatchSize() {
+    return this.batchSize;
+  }
+
+  // 一批最多幾筆訂單，1 表示不合併
+  public void setBatchSize(int batchSize) {
+    this.batchSize = Math.max(1, batchSize);
+  }
+
+  public long getBatchWindowMillis() {
+    return this.batchWindowMillis;
+  }
+
+  // 取得第一筆訂單後，最多再等多久湊成一批；大於 0 時單筆訂單也要等滿這段時間才開始製作
+  public void setBatchWindowMillis(long batchWindowMillis) {
+    this.batchWindowMillis = Math.max(0, batchWindowMillis);
+  }
+
+  public long getCookMillis() {
+    return this.cookMillis;
+  }
+
+  public void setCookMillis(long cookMillis) {
+    this.cookMillis = cookMillis;
   }
 
   // 處理特定訂單
   @Override
   public boolean processOrder(long id) {
-    for(AbstractOrder order : this.orders) {
-      if(order.getId() == id && order.getStatus() != OrderStatus.COMPLETED) {
-        order.setStatus(OrderStatus.PROCESSING);
-        System.out.println("訂單正在處理中..." + id);
-        return true;
-      }
+    AbstractOrder order = this.orders.get(id);
+
+    if(order != null && order.transition(OrderStatus.WAITING, OrderStatus.PROCESSING)) {
+      this.producer.recordStatus(order);
+      System.out.println("訂單正在處理中..." + id);
+      return true;
     }
 
     return false;
   }
 
-  // 處理下一個等待中的訂單
-  public void processNextOrder() {
-    for(AbstractOrder order : this.orders) {
-      if(order.getStatus() == OrderStatus.WAITING) {
-        boolean processed = processOrder(order.getId());
-        if(processed) {
-          break;
-        }
-      }
+  // 完成訂單
+  @Override
+  public boolean completedOrder(AbstractOrder order) {
+    if(!super.completedOrder(order)) {
+      return false;
     }
+
+    this.producer.recordStatus(order);
+    return true;
   }
 
   // 取得正在處理的訂單
   public AbstractOrder getProcessingOrder() {
-    for(AbstractOrder order : this.orders) {
-      if(order.getStatus() == OrderStatus.PROCESSING) {
-        return order;
-      }
-    }
-
-    return null;
+    return this.orders.firstWithStatus(OrderStatus.PROCESSING);
   }
 
   // 計算完成的訂單數量
   public int getCountOfCompletedOrders() {
-    int count = 0;
-
-    for(AbstractOrder order : this.orders) {
-      if(order.getStatus() == OrderStatus.COMPLETED) {
-        count++;
-      }
-    }
+    return this.orders.countOf(OrderStatus.COMPLETED);
+  }
 
-    return count;
+  // 計算各狀態的訂單數量
+  public int getCountOf(OrderStatus status) {
+    return this.orders.countOf(status);
   }
 
-  public List<AbstractOrder> getTotalOrders() {
+  public Collection<AbstractOrder> getTotalOrders() {
     return this.orders;
   }
 
   public void setProcessingOrder(Order order) {
     if(order != null) {
-      order.setStatus(OrderStatus.PROCESSING);
+      // 還原中的訂單，不檢查轉換規則
+      order.restoreStatus(OrderStatus.PROCESSING);
+      this.orders.add(order);
 
-      if(!orders.contains(order)) {
-        orders.add(order);
-      }
+      this.producer.recordStatus(order);
     }
   }
 
   public void addCompletedOrder(Order order) {
     if(order != null) {
-      order.setStatus(OrderStatus.COMPLETED);
+      order.restoreStatus(OrderStatus.COMPLETED);
+      this.orders.add(order);
 
-      if(!orders.contains(order)) {
-        orders.add(order);
-      }
+      this.producer.recordStatus(order);
     }
   }
 }
 
 /*
 類似「後台廚房系統」：消化排隊中的訂單，更新訂單狀態。
-執行緒會持續等待 queue 的新資料，達成非同步背景處理。
+多名廚房人員（KitchenWorker）同時等待 queue 的新資料，達成非同步背景處理。
 背景執行，模擬現實中處理訂單的過程。
  */
\ No newline at end of file
@@ -0,0 +1,123 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.MenuCatalog;
+import com.ordersystem.model.MenuItem;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+// 一次一起製作的訂單：相同的餐點合併成一份製作清單
+public class CookingBatch {
+  private final List<AbstractOrder> orders; // 這一批的訂單
+  private final int[] quantities; // 以 MenuCatalog 編號為索引的合併數量
+  private final int itemCount; // 合併後的總份數
+  private final int lineCount; // 不同餐點的數量
+
+  private final ReentrantLock lock = new ReentrantLock(); // 保護 liveOrders
+  private final Condition allCancelled = lock.newCondition(); // 整批都被取消時通知製作中的廚房人員
+  private int liveOrders; // 尚未被取消的訂單數
+
+  CookingBatch(List<AbstractOrder> orders) {
+    this.orders = Collections.unmodifiableList(orders);
+    this.quantities = new int[MenuCatalog.size()];
+
+    int itemCount = 0;
+    int lineCount = 0;
+    for(AbstractOrder order : orders) {
+      for(Map.Entry<MenuItem, Integer> item : order.getItems().entrySet()) {
+        int catalogId = item.getKey().getCatalogId();
+        if(this.quantities[catalogId] == 0) {
+          lineCount++;
+        }
+
+        this.quantities[catalogId] += item.getValue();
+        itemCount += item.getValue();
+      }
+    }
+
+    this.itemCount = itemCount;
+    this.lineCount = lineCount;
+    this.liveOrders = orders.size();
+  }
+
+  // 批次中的一筆訂單被取消，每筆訂單只能呼叫一次
+  void orderCancelled() {
+    lock.lock();
+    try {
+      this.liveOrders--;
+      if(this.liveOrders == 0) {
+        this.allCancelled.signalAll();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // 等待製作時間結束，整批都被取消時提早回傳 false
+  boolean awaitCooked(long cookMillis) throws InterruptedException {
+    lock.lock();
+    try {
+      long remaining = TimeUnit.MILLISECONDS.toNanos(cookMillis);
+      while(this.liveOrders > 0) {
+        if(remaining <= 0) {
+          return true;
+        }
+        remaining = this.allCancelled.awaitNanos(remaining);
+      }
+
+      return false;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // 尚未被取消的訂單數
+  public int getLiveOrderCount() {
+    lock.lock();
+    try {
+      return this.liveOrders;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  public List<AbstractOrder> getOrders() {
+    return this.orders;
+  }
+
+  // 合併後的製作清單，例如三筆訂單各點一份薯條就是「薯條 x3」
+  public Map<MenuItem, Integer> getLines() {
+    Map<MenuItem, Integer> lines = new LinkedHashMap<>();
+
+    for(int i = 0; i < this.quantities.length; i++) {
+      if(this.quantities[i] > 0) {
+        lines.put(MenuCatalog.get(i), this.quantities[i]);
+      }
+    }
+
+    return lines;
+  }
+
+  public int getItemCount() {
+    return this.itemCount;
+  }
+
+  public int getLineCount() {
+    return this.lineCount;
+  }
+
+  @Override
+  public String toString() {
+    return this.orders.size() + " 筆訂單：" + getLines();
+  }
+}
+
+/*
+用途：廚房人員一次取出多筆放行的訂單，把相同的餐點合併成一次製作。
+製作完成後再依 orders 逐筆把訂單標記為完成；整批都被取消時廚房人員不必等到製作時間結束。
+ */
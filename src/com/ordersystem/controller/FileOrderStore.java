@@ -0,0 +1,154 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import com.ordersystem.model.OrderStore;
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FileOrderStore implements OrderStore {
+  private static final long DEFAULT_CHECKPOINT_INTERVAL_MILLIS = 5000; // 預設檢查點間隔
+
+  private final OrderFileManager fileManager;
+  private final long checkpointIntervalMillis;
+  private volatile OrderJournal journal; // loadOrders 之後才開啟
+  private volatile OrderCheckpointer checkpointer; // loadOrders 之後才啟動
+  private RecoveryReport recoveryReport; // 最近一次載入的結果
+
+  public FileOrderStore(File directory, StorageFormat format, long checkpointIntervalMillis) {
+    this(new OrderFileManager(directory, format), checkpointIntervalMillis);
+  }
+
+  FileOrderStore(OrderFileManager fileManager, long checkpointIntervalMillis) {
+    this.fileManager = fileManager;
+    this.checkpointIntervalMillis = checkpointIntervalMillis;
+  }
+
+  // 日誌加文字快照，快照方便人工檢查
+  public static FileOrderStore journaled(File directory) {
+    return new FileOrderStore(directory, StorageFormat.TEXT, DEFAULT_CHECKPOINT_INTERVAL_MILLIS);
+  }
+
+  // 日誌加二進位區段，讀取時使用記憶體映射
+  public static FileOrderStore mapped(File directory) {
+    return new FileOrderStore(directory, StorageFormat.BINARY, DEFAULT_CHECKPOINT_INTERVAL_MILLIS);
+  }
+
+  // 還原訂單後開啟日誌並啟動背景檢查點
+  @Override
+  public List<Order> loadOrders() {
+    this.recoveryReport = this.fileManager.recoverOrders();
+    List<Order> orders = this.recoveryReport.getOrders();
+
+    try {
+      this.journal = this.fileManager.openJournal();
+
+      // 上次沒有正常關閉時會留下日誌，先壓縮成快照，之後的檢查點只需要寫入變更
+      if(this.recoveryReport.getJournalSegments() > 0) {
+        this.fileManager.compact(orders);
+      }
+
+      this.checkpointer = new OrderCheckpointer(this.fileManager, this.checkpointIntervalMillis);
+    } catch(IOException e) {
+      System.err.println("Error opening order journal: " + e.getMessage());
+    }
+
+    return new ArrayList<>(orders);
+  }
+
+  @Override
+  public void orderCreated(AbstractOrder order) {
+    // 先標記再寫日誌：兩步之間如果剛好輪替日誌，這筆變更會由這次檢查點寫入快照，不會隨封存的區段被刪除
+    markDirty(order);
+
+    OrderJournal journal = this.journal;
+    if(journal != null) {
+      journal.appendCreated(order);
+    }
+  }
+
+  @Override
+  public void statusChanged(AbstractOrder order) {
+    markDirty(order);
+
+    OrderJournal journal = this.journal;
+    if(journal != null) {
+      journal.appendStatus(order);
+    }
+  }
+
+  private void markDirty(AbstractOrder order) {
+    OrderCheckpointer checkpointer = this.checkpointer;
+    if(checkpointer != null) {
+      checkpointer.markDirty(order);
+    }
+  }
+
+  @Override
+  public Order findOrder(long id) {
+    return this.fileManager.findOrder(id);
+  }
+
+  @Override
+  public List<Order> ordersBetween(LocalDateTime from, LocalDateTime to, OrderStatus status) {
+    return this.fileManager.ordersBetween(from, to, status);
+  }
+
+  // 等待日誌同步到磁碟
+  @Override
+  public void flush() {
+    OrderJournal journal = this.journal;
+    if(journal == null) {
+      return;
+    }
+
+    try {
+      journal.sync();
+    } catch(IOException e) {
+      System.err.println("Error syncing order journal: " + e.getMessage());
+      e.printStackTrace();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // 寫入最後一次檢查點並關閉日誌
+  @Override
+  public void close() {
+    if(this.checkpointer != null) {
+      this.checkpointer.close();
+      this.checkpointer = null;
+    }
+
+    this.journal = null;
+    this.fileManager.closeJournal();
+  }
+
+  // 在背景壓縮歷史快照
+  public void compactInBackground(RetentionPolicy policy) {
+    Thread compactor = new Thread(() -> this.fileManager.compactArchive(policy), "order-compactor");
+    compactor.setDaemon(true);
+    compactor.start();
+  }
+
+  public RecoveryReport getRecoveryReport() {
+    return this.recoveryReport;
+  }
+
+  public OrderCheckpointer getCheckpointer() {
+    return this.checkpointer;
+  }
+
+  public OrderFileManager getFileManager() {
+    return this.fileManager;
+  }
+}
+
+/*
+用途：以檔案保存訂單的 OrderStore，組合日誌、背景檢查點與快照壓縮。
+快照格式可選文字（journaled）或二進位記憶體映射（mapped）。
+ */
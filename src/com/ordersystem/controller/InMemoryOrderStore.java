@@ -0,0 +1,67 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import com.ordersystem.model.OrderStore;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+public class InMemoryOrderStore implements OrderStore {
+  private final Map<Long, Order> orderById = new ConcurrentHashMap<>(); // 以訂單編號查詢
+  private final ConcurrentLinkedQueue<Order> insertionOrder = new ConcurrentLinkedQueue<>(); // 保留新增順序
+
+  @Override
+  public List<Order> loadOrders() {
+    return new ArrayList<>(this.insertionOrder);
+  }
+
+  @Override
+  public void orderCreated(AbstractOrder order) {
+    if(order instanceof Order && this.orderById.putIfAbsent(order.getId(), (Order) order) == null) {
+      this.insertionOrder.add((Order) order);
+    }
+  }
+
+  @Override
+  public void statusChanged(AbstractOrder order) {
+    // 保存的是同一個物件，狀態已經是最新的
+    orderCreated(order);
+  }
+
+  @Override
+  public Order findOrder(long id) {
+    return this.orderById.get(id);
+  }
+
+  @Override
+  public List<Order> ordersBetween(LocalDateTime from, LocalDateTime to, OrderStatus status) {
+    List<Order> result = new ArrayList<>();
+
+    for(Order order : this.insertionOrder) {
+      boolean inRange = !order.getTime().isBefore(from) && order.getTime().isBefore(to);
+      if(inRange && (status == null || order.getStatus() == status)) {
+        result.add(order);
+      }
+    }
+
+    return result;
+  }
+
+  @Override
+  public void flush() {
+  }
+
+  @Override
+  public void close() {
+  }
+}
+
+/*
+用途：只存在記憶體中的訂單儲存，不寫入磁碟。
+適合測試與效能比較時作為基準。
+ */
@@ -0,0 +1,134 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+// 廚房人員：從訂單佇列取出一批訂單並製作，一次只處理自己手上的這一批
+public class KitchenWorker implements Runnable {
+  private final int index; // 廚房人員編號
+  private final Consumer consumer;
+
+  private volatile CookingBatch inFlightBatch; // 製作中的訂單，沒有時為 null
+  private volatile long startedNanos; // 開始工作的時間
+
+  // 統計資料，只有這個廚房人員的執行緒會寫入
+  private volatile long completedCount = 0; // 完成的訂單數
+  private volatile long itemsCooked = 0; // 製作的餐點份數
+  private volatile long batchCount = 0; // 製作的批次數
+  private volatile long busyNanos = 0; // 製作訂單花費的總時間
+
+  KitchenWorker(int index, Consumer consumer) {
+    this.index = index;
+    this.consumer = consumer;
+  }
+
+  @Override
+  public void run() {
+    this.startedNanos = System.nanoTime();
+
+    try {
+      while(!Thread.currentThread().isInterrupted()) {
+        // 等待放行並取得下一批可以製作的訂單
+        CookingBatch batch = this.consumer.takeNextBatch();
+        cook(batch);
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private void cook(CookingBatch batch) throws InterruptedException {
+    long start = System.nanoTime();
+    long cookMillis = this.consumer.getCookMillis();
+    this.inFlightBatch = batch;
+    this.consumer.beginCooking(batch);
+
+    try {
+      // 模擬製作時間：相同的餐點一起製作，一批只花一次製作時間；整批都被取消就提早停止
+      if(!batch.awaitCooked(cookMillis)) {
+        this.consumer.batchCancelled(batch, start + TimeUnit.MILLISECONDS.toNanos(cookMillis) - System.nanoTime());
+        return;
+      }
+
+      this.itemsCooked += batch.getItemCount();
+      this.batchCount++;
+
+      // 製作完成後逐筆完成訂單，期間被取消的訂單不會被標記為完成
+      for(AbstractOrder order : batch.getOrders()) {
+        if(this.consumer.completedOrder(order)) {
+          this.completedCount++;
+          this.consumer.fireOrderCompleted(order, this);
+        }
+      }
+    } finally {
+      this.consumer.endCooking(batch);
+      this.inFlightBatch = null;
+      this.busyNanos += System.nanoTime() - start;
+    }
+  }
+
+  public int getIndex() {
+    return this.index;
+  }
+
+  // 製作中的訂單，沒有時回傳空列表
+  public List<AbstractOrder> getInFlightOrders() {
+    CookingBatch batch = this.inFlightBatch;
+    return batch == null ? Collections.emptyList() : batch.getOrders();
+  }
+
+  public CookingBatch getInFlightBatch() {
+    return this.inFlightBatch;
+  }
+
+  public boolean isBusy() {
+    return this.inFlightBatch != null;
+  }
+
+  public long getCompletedCount() {
+    return this.completedCount;
+  }
+
+  public long getItemsCooked() {
+    return this.itemsCooked;
+  }
+
+  public long getBatchCount() {
+    return this.batchCount;
+  }
+
+  public long getBusyMillis() {
+    return this.busyNanos / 1_000_000;
+  }
+
+  // 每分鐘完成的訂單數
+  public double getOrdersPerMinute() {
+    long elapsedNanos = System.nanoTime() - this.startedNanos;
+    return this.startedNanos == 0 || elapsedNanos <= 0 ? 0 : this.completedCount * 60_000_000_000.0 / elapsedNanos;
+  }
+
+  // 每分鐘製作的餐點份數
+  public double getItemsPerMinute() {
+    long elapsedNanos = System.nanoTime() - this.startedNanos;
+    return this.startedNanos == 0 || elapsedNanos <= 0 ? 0 : this.itemsCooked * 60_000_000_000.0 / elapsedNanos;
+  }
+
+  // 忙碌時間佔工作時間的比例（0 ~ 1）
+  public double getUtilization() {
+    long elapsedNanos = System.nanoTime() - this.startedNanos;
+    return this.startedNanos == 0 || elapsedNanos <= 0 ? 0 : Math.min(1.0, (double) this.busyNanos / elapsedNanos);
+  }
+
+  @Override
+  public String toString() {
+    return String.format("廚房人員 #%d：完成 %d 筆（%d 批），%.1f 筆/分鐘，%.1f 份/分鐘，忙碌 %.0f%%",
+      this.index, this.completedCount, this.batchCount, getOrdersPerMinute(), getItemsPerMinute(), getUtilization() * 100);
+  }
+}
+
+/*
+用途：Consumer 的工作執行緒，每個廚房人員擁有自己製作中的那一批訂單。
+記錄完成數、批次數、忙碌時間與每分鐘產能，用來調整廚房人員的數量與批次大小。
+ */
@@ -0,0 +1,90 @@
+package com.ordersystem.controller;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// 延遲分布統計：以微秒記錄，每個 2 的次方區間再分成 8 格，誤差約 12.5%
+public class LatencyHistogram {
+  private static final int SUB_BUCKET_BITS = 3;
+  private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+  private static final int BUCKET_COUNT = 40 * SUB_BUCKETS; // 可記錄到約 2^40 微秒（12 天）
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong(0);
+  private final AtomicLong totalMicros = new AtomicLong(0);
+  private final AtomicLong maxMicros = new AtomicLong(0);
+
+  // 記錄一筆延遲（奈秒）
+  public void record(long nanos) {
+    long micros = Math.max(0, nanos / 1000);
+
+    this.buckets.incrementAndGet(bucketOf(micros));
+    this.count.incrementAndGet();
+    this.totalMicros.addAndGet(micros);
+    this.maxMicros.accumulateAndGet(micros, Math::max);
+  }
+
+  public long getCount() {
+    return this.count.get();
+  }
+
+  public double getMeanMillis() {
+    long count = this.count.get();
+    return count == 0 ? 0 : this.totalMicros.get() / 1000.0 / count;
+  }
+
+  public double getMaxMillis() {
+    return this.maxMicros.get() / 1000.0;
+  }
+
+  // 取得百分位數（例如 0.99），回傳該格的上限（毫秒）
+  public double getPercentileMillis(double percentile) {
+    long count = this.count.get();
+    if(count == 0) {
+      return 0;
+    }
+
+    long target = (long) Math.ceil(percentile * count);
+    long seen = 0;
+
+    for(int i = 0; i < BUCKET_COUNT; i++) {
+      seen += this.buckets.get(i);
+      if(seen >= target) {
+        return Math.min(upperBoundOf(i), this.maxMicros.get()) / 1000.0;
+      }
+    }
+
+    return getMaxMillis();
+  }
+
+  private static int bucketOf(long micros) {
+    if(micros < SUB_BUCKETS) {
+      return (int) micros;
+    }
+
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    int subBucket = (int) (micros >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+    return Math.min(BUCKET_COUNT - 1, (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket);
+  }
+
+  private static long upperBoundOf(int bucket) {
+    if(bucket < SUB_BUCKETS) {
+      return bucket;
+    }
+
+    int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+    int subBucket = bucket % SUB_BUCKETS;
+    return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("%d 筆，平均 %.1f ms，p50 %.1f ms，p95 %.1f ms，p99 %.1f ms，最大 %.1f ms",
+      getCount(), getMeanMillis(), getPercentileMillis(0.50), getPercentileMillis(0.95), getPercentileMillis(0.99), getMaxMillis());
+  }
+}
+
+/*
+用途：記錄訂單等待時間等延遲的分布，提供 p50 / p95 / p99。
+固定大小的計數陣列，記錄不需要上鎖也不會隨筆數成長。
+ */
@@ -0,0 +1,205 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.Order;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class OrderCheckpointer {
+  // 一次檢查點要寫入的內容：變更過的訂單，以及寫入後可以刪除的日誌區段
+  private static class Checkpoint {
+    private final List<Order> orders;
+    private final List<File> sealedSegments;
+    private final long firstDirtyNanos; // 這批變更中最早的一筆時間
+
+    Checkpoint(List<Order> orders, List<File> sealedSegments, long firstDirtyNanos) {
+      this.orders = orders;
+      this.sealedSegments = sealedSegments;
+      this.firstDirtyNanos = firstDirtyNanos;
+    }
+  }
+
+  private static final Checkpoint STOP = new Checkpoint(new ArrayList<>(), new ArrayList<>(), 0); // 通知寫入執行緒結束
+  private static final int QUEUE_CAPACITY = 4; // 等待寫入的檢查點上限
+
+  private final OrderFileManager fileManager;
+  private final Map<Long, Order> dirtyOrders = new ConcurrentHashMap<>(); // 上次檢查點之後變更過的訂單
+  private final AtomicLong firstDirtyNanos = new AtomicLong(0); // 最早一筆未寫入變更的時間，0 表示沒有
+  private final BlockingQueue<Checkpoint> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+  private final ScheduledExecutorService scheduler;
+  private final Thread writer; // 專用的寫入執行緒
+  private final Object drainLock = new Object(); // 確保輪替日誌與取出變更是同一個步驟
+
+  // 統計資料
+  private volatile long lastCheckpointMillis = 0; // 上次檢查點寫入耗時
+  private volatile long lastCheckpointLagMillis = 0; // 上次檢查點寫入時的延遲
+  private volatile int lastCheckpointSize = 0; // 上次檢查點寫入的訂單數
+  private final AtomicLong checkpointCount = new AtomicLong(0);
+  private final AtomicLong skippedCount = new AtomicLong(0); // 佇列已滿而延後的次數
+
+  public OrderCheckpointer(OrderFileManager fileManager, long intervalMillis) {
+    this.fileManager = fileManager;
+
+    this.writer = new Thread(this::writeLoop, "order-checkpoint-writer");
+    this.writer.setDaemon(true);
+    this.writer.start();
+
+    this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+      Thread thread = new Thread(runnable, "order-checkpoint-scheduler");
+      thread.setDaemon(true);
+      return thread;
+    });
+    this.scheduler.scheduleWithFixedDelay(this::requestCheckpoint, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  // 標記訂單已變更，下次檢查點會寫入
+  public void markDirty(AbstractOrder order) {
+    if(order instanceof Order) {
+      this.firstDirtyNanos.compareAndSet(0, System.nanoTime());
+      this.dirtyOrders.put(order.getId(), (Order) order);
+    }
+  }
+
+  // 排入一次檢查點，寫入佇列已滿時延後到下一次
+  public void requestCheckpoint() {
+    synchronized(drainLock) {
+      if(this.dirtyOrders.isEmpty()) {
+        return;
+      }
+
+      if(this.queue.remainingCapacity() == 0) {
+        this.skippedCount.incrementAndGet();
+        return;
+      }
+
+      try {
+        this.queue.put(drain());
+      } catch(IOException e) {
+        e.printStackTrace();
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+      }
+    }
+  }
+
+  // 呼叫前必須持有 drainLock
+  private Checkpoint drain() throws IOException {
+    // 先輪替日誌再取出變更。FileOrderStore 先標記訂單再寫日誌，
+    // 所以被封存的區段中的每一筆紀錄，對應的訂單在輪替前就已經標記，一定包含在這次取出的訂單中
+    List<File> sealedSegments = this.fileManager.rotateJournal();
+    long firstDirty = this.firstDirtyNanos.getAndSet(0);
+
+    List<Order> orders = new ArrayList<>();
+    for(Long id : this.dirtyOrders.keySet()) {
+      Order order = this.dirtyOrders.remove(id);
+      if(order != null) {
+        orders.add(order);
+      }
+    }
+
+    return new Checkpoint(orders, sealedSegments, firstDirty);
+  }
+
+  private void writeLoop() {
+    try {
+      while(true) {
+        Checkpoint checkpoint = this.queue.take();
+        if(checkpoint == STOP) {
+          return;
+        }
+
+        long start = System.nanoTime();
+        try {
+          this.fileManager.writeCheckpoint(checkpoint.orders, checkpoint.sealedSegments);
+        } catch(IOException e) {
+          e.printStackTrace();
+          // 寫入失敗時重新標記，下一次檢查點再試
+          for(Order order : checkpoint.orders) {
+            markDirty(order);
+          }
+          continue;
+        }
+
+        long end = System.nanoTime();
+        this.lastCheckpointMillis = (end - start) / 1_000_000;
+        this.lastCheckpointLagMillis = checkpoint.firstDirtyNanos == 0 ? 0 : (end - checkpoint.firstDirtyNanos) / 1_000_000;
+        this.lastCheckpointSize = checkpoint.orders.size();
+        this.checkpointCount.incrementAndGet();
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // 關閉：停止排程，把剩下的變更寫入後結束寫入執行緒
+  public void close() {
+    this.scheduler.shutdownNow();
+
+    try {
+      synchronized(drainLock) {
+        if(!this.dirtyOrders.isEmpty()) {
+          this.queue.put(drain());
+        }
+        this.queue.put(STOP);
+      }
+
+      this.writer.join();
+    } catch(IOException e) {
+      e.printStackTrace();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // 目前最舊一筆尚未寫入的變更已經等待多久
+  public long getCheckpointLagMillis() {
+    long firstDirty = this.firstDirtyNanos.get();
+    return firstDirty == 0 ? 0 : (System.nanoTime() - firstDirty) / 1_000_000;
+  }
+
+  public long getLastCheckpointMillis() {
+    return this.lastCheckpointMillis;
+  }
+
+  public long getLastCheckpointLagMillis() {
+    return this.lastCheckpointLagMillis;
+  }
+
+  public int getLastCheckpointSize() {
+    return this.lastCheckpointSize;
+  }
+
+  public long getCheckpointCount() {
+    return this.checkpointCount.get();
+  }
+
+  public long getSkippedCount() {
+    return this.skippedCount.get();
+  }
+
+  // 尚未寫入的變更訂單數
+  public int getDirtyCount() {
+    return this.dirtyOrders.size();
+  }
+
+  // 排隊等待寫入的檢查點數
+  public int getPendingCheckpoints() {
+    return this.queue.size();
+  }
+}
+
+/*
+用途：背景增量檢查點，只寫入上次檢查點之後變更過的訂單。
+排程執行緒定期取出變更，透過有界佇列交給專用的寫入執行緒，不佔用 EDT。
+關閉視窗時只需要寫入剩下的少量變更。
+ */
@@ -0,0 +1,83 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.Order;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+public class OrderCompactor {
+  private final OrderFileManager fileManager;
+  private final File directory; // 訂單資料夾
+
+  public OrderCompactor(OrderFileManager fileManager, File directory) {
+    this.fileManager = fileManager;
+    this.directory = directory;
+  }
+
+  // 把目前所有的快照合併成每個分區一個區段，並套用保留規則
+  public CompactionReport compact(RetentionPolicy policy) throws IOException {
+    long start = System.nanoTime();
+
+    // 只處理開始時已存在的快照，之後寫入的檢查點不受影響
+    File[] inputs = OrderFileManager.listSnapshots(this.directory);
+    if(inputs.length < policy.getMinSnapshots()) {
+      return CompactionReport.empty();
+    }
+
+    // 讀取與合併不持有鎖，寫入者可以繼續寫入新的檢查點
+    Map<Long, Order> orderById = new LinkedHashMap<>();
+    long recordsRead = 0;
+    long bytesBefore = 0;
+
+    for(File input : inputs) {
+      bytesBefore += input.length() + OrderIndex.fileFor(input).length();
+
+      try(OrderCursor cursor = OrderFileManager.openSnapshotCursor(input, OrderFilter.all())) {
+        while(cursor.hasNext()) {
+          Order order = cursor.next();
+          orderById.put(order.getId(), order);
+          recordsRead++;
+        }
+      } catch(UncheckedIOException e) {
+        throw e.getCause();
+      }
+    }
+
+    // 套用保留規則並依日期分區
+    LocalDateTime now = LocalDateTime.now();
+    Map<LocalDate, List<Order>> partitions = new TreeMap<>();
+    long ordersKept = 0;
+
+    for(Order order : orderById.values()) {
+      if(policy.retains(order, now)) {
+        LocalDate day = order.getTime() == null ? now.toLocalDate() : order.getTime().toLocalDate();
+        partitions.computeIfAbsent(day, key -> new ArrayList<>()).add(order);
+        ordersKept++;
+      }
+    }
+
+    // 新區段沿用最新一個輸入的時間作為檔名，排序上仍早於之後寫入的檢查點
+    String newestName = inputs[inputs.length - 1].getName();
+    String filename = newestName.substring(0, newestName.lastIndexOf('.')) + StorageFormat.BINARY.getExtension();
+
+    long bytesAfter = this.fileManager.replaceSnapshots(inputs, partitions, filename);
+
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    return new CompactionReport(inputs.length, partitions.size(), recordsRead, ordersKept,
+      orderById.size() - ordersKept, bytesBefore, bytesAfter, elapsedMillis);
+  }
+}
+
+/*
+用途：壓縮 orders/ 資料夾，把歷史快照與增量檢查點合併成每天一個區段。
+同一筆訂單只保留最新的狀態，並依保留規則丟棄過舊的已結束訂單。
+合併過程不持有讀寫鎖，只有最後替換檔案時短暫取得寫入鎖。
+ */
@@ -0,0 +1,12 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+
+// 廚房人員完成訂單時的通知（在廚房人員的執行緒上呼叫）
+public interface OrderCompletionListener {
+  void orderCompleted(AbstractOrder order, KitchenWorker worker);
+}
+
+/*
+用途：讓畫面在訂單完成時更新狀態或顯示訊息，不需要自己開執行緒等待。
+ */
@@ -0,0 +1,14 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.Order;
+import java.io.Closeable;
+import java.util.Iterator;
+
+// 逐筆讀取已儲存訂單的游標，用完必須關閉
+public interface OrderCursor extends Iterator<Order>, Closeable {
+}
+
+/*
+用途：一邊解碼一邊回傳訂單，不需要先把整個檔案讀成 List。
+讀取錯誤會以 UncheckedIOException 拋出。
+ */
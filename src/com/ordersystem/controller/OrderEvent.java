@@ -0,0 +1,45 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+
+// 訂單生命週期中的一個事件
+public class OrderEvent {
+  public enum Type {
+    CREATED, // 訂單加入訂單簿（包含啟動時還原的訂單）
+    STARTED, // 廚房人員開始製作
+    COMPLETED, // 製作完成
+    CANCELLED, // 被取消
+    EXPIRED // 超過期限未製作，被系統取消
+  }
+
+  private final Type type;
+  private final AbstractOrder order;
+  private final long nanos; // 事件發生的時間（System.nanoTime）
+
+  OrderEvent(Type type, AbstractOrder order, long nanos) {
+    this.type = type;
+    this.order = order;
+    this.nanos = nanos;
+  }
+
+  public Type getType() {
+    return this.type;
+  }
+
+  public AbstractOrder getOrder() {
+    return this.order;
+  }
+
+  public long getNanos() {
+    return this.nanos;
+  }
+
+  @Override
+  public String toString() {
+    return this.type + " #" + this.order.getId();
+  }
+}
+
+/*
+用途：OrderEventBus 發布的事件，訂閱者依 type 判斷要做什麼，不需要比對狀態的前後變化。
+ */
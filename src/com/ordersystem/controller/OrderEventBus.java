@@ -0,0 +1,141 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import com.ordersystem.model.OrderStatusListener;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+// 訂單事件的發布與訂閱：訂單簿的狀態變更轉換為 OrderEvent，交給有興趣的訂閱者
+public class OrderEventBus implements OrderStatusListener {
+  private final List<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+  private final LongAdder publishedCount = new LongAdder();
+
+  // 一個訂閱者與它關心的事件種類
+  private static class Subscription {
+    final OrderEventListener listener;
+    final Set<OrderEvent.Type> types;
+
+    Subscription(OrderEventListener listener, Set<OrderEvent.Type> types) {
+      this.listener = listener;
+      this.types = EnumSet.copyOf(types);
+    }
+
+    void deliver(OrderEvent event) {
+      this.listener.onEvents(Collections.singletonList(event));
+    }
+  }
+
+  // 合併訂閱：事件先累積起來，executor 上同時最多只排一次處理，處理時一次取走全部
+  private static class CoalescingSubscription extends Subscription {
+    private final Executor executor;
+    private final ConcurrentLinkedQueue<OrderEvent> pending = new ConcurrentLinkedQueue<>();
+    private final AtomicBoolean scheduled = new AtomicBoolean(false);
+
+    CoalescingSubscription(OrderEventListener listener, Set<OrderEvent.Type> types, Executor executor) {
+      super(listener, types);
+      this.executor = executor;
+    }
+
+    @Override
+    void deliver(OrderEvent event) {
+      this.pending.offer(event);
+      if(this.scheduled.compareAndSet(false, true)) {
+        this.executor.execute(this::flush);
+      }
+    }
+
+    private void flush() {
+      // 先清除旗標再取出，取出期間新發布的事件會排下一次處理，不會遺漏
+      this.scheduled.set(false);
+
+      List<OrderEvent> events = new ArrayList<>();
+      OrderEvent event;
+      while((event = this.pending.poll()) != null) {
+        events.add(event);
+      }
+
+      if(!events.isEmpty()) {
+        this.listener.onEvents(events);
+      }
+    }
+  }
+
+  // 訂閱指定種類的事件，在發布事件的執行緒上立即通知
+  public void subscribe(Set<OrderEvent.Type> types, OrderEventListener listener) {
+    this.subscriptions.add(new Subscription(listener, types));
+  }
+
+  // 合併訂閱：在 executor 上通知（例如 SwingUtilities::invokeLater），連續的事件合併成一次呼叫
+  public void subscribe(Set<OrderEvent.Type> types, Executor executor, OrderEventListener listener) {
+    this.subscriptions.add(new CoalescingSubscription(listener, types, executor));
+  }
+
+  public void unsubscribe(OrderEventListener listener) {
+    this.subscriptions.removeIf(subscription -> subscription.listener == listener);
+  }
+
+  public void publish(OrderEvent event) {
+    this.publishedCount.increment();
+
+    for(Subscription subscription : this.subscriptions) {
+      if(subscription.types.contains(event.getType())) {
+        subscription.deliver(event);
+      }
+    }
+  }
+
+  public void publish(OrderEvent.Type type, AbstractOrder order) {
+    publish(new OrderEvent(type, order, System.nanoTime()));
+  }
+
+  // 訂單簿的狀態變更通知，轉換為對應的事件
+  @Override
+  public void statusChanged(AbstractOrder order, OrderStatus previous, OrderStatus current) {
+    if(this.subscriptions.isEmpty()) {
+      return;
+    }
+
+    OrderEvent.Type type = typeOf(order, previous, current);
+    if(type != null) {
+      publish(type, order);
+    }
+  }
+
+  private static OrderEvent.Type typeOf(AbstractOrder order, OrderStatus previous, OrderStatus current) {
+    // 訂單簿剛開始追蹤這筆訂單，還原的訂單也算新增，不重複發出完成或取消
+    if(previous == null) {
+      return OrderEvent.Type.CREATED;
+    }
+
+    switch(current) {
+      case PROCESSING:
+        return OrderEvent.Type.STARTED;
+      case COMPLETED:
+        return OrderEvent.Type.COMPLETED;
+      case CANCELLED:
+        return order instanceof Order && ((Order) order).isCancelledByExpiry() ? OrderEvent.Type.EXPIRED : OrderEvent.Type.CANCELLED;
+      default:
+        return null;
+    }
+  }
+
+  // 已發布的事件總數
+  public long getPublishedCount() {
+    return this.publishedCount.sum();
+  }
+}
+
+/*
+用途：取代畫面每 500 毫秒輪詢一次的監控執行緒，只有訂單真的改變時才通知。
+合併訂閱讓大量事件在 EDT 上只觸發一次更新，畫面的工作量與變更量成正比。
+ */
@@ -0,0 +1,12 @@
+package com.ordersystem.controller;
+
+import java.util.List;
+
+// 訂單事件的訂閱者，合併訂閱時一次收到多筆事件（依發布順序）
+public interface OrderEventListener {
+  void onEvents(List<OrderEvent> events);
+}
+
+/*
+用途：讓畫面或其他元件在訂單狀態改變時才做事，取代定時輪詢。
+ */
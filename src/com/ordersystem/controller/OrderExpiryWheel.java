@@ -0,0 +1,318 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/*
+雜湊時間輪：wheelSize 格排成一圈，指針每 tickMillis 前進一格。
+計時器依到期的 tick 放進對應的格子，超過一圈的記錄還要轉幾圈（remainingRounds）。
+指針每次只看目前這一格，新增與取消都是 O(1)，不會因為等待中的計時器很多而變慢。
+ */
+public class OrderExpiryWheel implements OrderEventListener {
+  private static final long DEFAULT_TICK_MILLIS = 1000; // 過期時間是 24 小時，一秒的誤差可以接受
+  private static final int DEFAULT_WHEEL_SIZE = 4096; // 一圈約 68 分鐘
+
+  // 一筆訂單的過期計時器，格子中的串列只有掃描執行緒會修改
+  private static class Timer {
+    static final int PENDING = 0;
+    static final int EXPIRED = 1;
+    static final int CANCELLED = 2;
+
+    final Order order;
+    final long deadlineNanos; // 相對於 startNanos 的到期時間
+    final AtomicInteger state = new AtomicInteger(PENDING);
+    long remainingRounds; // 指針還要經過這一格幾次才到期
+    Bucket bucket; // 所在的格子，還沒放入或已移除時為 null
+    Timer previous;
+    Timer next;
+
+    Timer(Order order, long deadlineNanos) {
+      this.order = order;
+      this.deadlineNanos = deadlineNanos;
+    }
+  }
+
+  // 時間輪上的一格：計時器的雙向串列
+  private static class Bucket {
+    private Timer head;
+    private Timer tail;
+
+    void add(Timer timer) {
+      timer.bucket = this;
+      timer.previous = this.tail;
+      if(this.tail == null) {
+        this.head = timer;
+      } else {
+        this.tail.next = timer;
+      }
+      this.tail = timer;
+    }
+
+    void remove(Timer timer) {
+      if(timer.previous == null) {
+        this.head = timer.next;
+      } else {
+        timer.previous.next = timer.next;
+      }
+
+      if(timer.next == null) {
+        this.tail = timer.previous;
+      } else {
+        timer.next.previous = timer.previous;
+      }
+
+      timer.bucket = null;
+      timer.previous = null;
+      timer.next = null;
+    }
+
+    // 取出這一圈到期的計時器，其餘的圈數減一
+    void expire(List<Timer> expired) {
+      Timer timer = this.head;
+
+      while(timer != null) {
+        Timer next = timer.next;
+
+        if(timer.remainingRounds <= 0) {
+          remove(timer);
+          if(timer.state.compareAndSet(Timer.PENDING, Timer.EXPIRED)) {
+            expired.add(timer);
+          }
+        } else if(timer.state.get() == Timer.CANCELLED) {
+          remove(timer);
+        } else {
+          timer.remainingRounds--;
+        }
+
+        timer = next;
+      }
+    }
+  }
+
+  private final Producer producer;
+  private final long tickNanos;
+  private final int mask;
+  private final Bucket[] wheel;
+  private final long startNanos = System.nanoTime();
+  private long tick = 0; // 目前指針的位置，只有掃描執行緒使用
+
+  private final Map<Long, Timer> timers = new ConcurrentHashMap<>(); // 訂單編號 → 尚未到期的計時器
+  private final ConcurrentLinkedQueue<Timer> scheduledTimers = new ConcurrentLinkedQueue<>(); // 等待放入格子
+  private final ConcurrentLinkedQueue<Timer> cancelledTimers = new ConcurrentLinkedQueue<>(); // 等待從格子移除
+  private final LongAdder expiredCount = new LongAdder();
+
+  private volatile boolean idle = false; // 沒有任何計時器時，掃描執行緒停下來等待
+  private Thread sweeper;
+
+  public OrderExpiryWheel(Producer producer) {
+    this(producer, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+  }
+
+  // wheelSize 會調整為 2 的次方
+  public OrderExpiryWheel(Producer producer, long tickMillis, int wheelSize) {
+    if(tickMillis <= 0 || wheelSize <= 0 || wheelSize > (1 << 20)) {
+      throw new IllegalArgumentException("時間輪設定錯誤：tickMillis=" + tickMillis + ", wheelSize=" + wheelSize);
+    }
+
+    int size = 1;
+    while(size < wheelSize) {
+      size <<= 1;
+    }
+
+    this.producer = producer;
+    this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+    this.mask = size - 1;
+    this.wheel = new Bucket[size];
+    for(int i = 0; i < size; i++) {
+      this.wheel[i] = new Bucket();
+    }
+
+    // 訂單建立時排定過期時間，開始製作、完成或取消時取消計時器
+    producer.getEventBus().subscribe(EnumSet.allOf(OrderEvent.Type.class), this);
+  }
+
+  public synchronized void start() {
+    if(this.sweeper != null) {
+      return;
+    }
+
+    this.sweeper = new Thread(this::sweepLoop, "order-expiry-wheel");
+    this.sweeper.setDaemon(true);
+    this.sweeper.start();
+  }
+
+  public synchronized void stop() {
+    if(this.sweeper != null) {
+      this.sweeper.interrupt();
+      this.sweeper = null;
+    }
+  }
+
+  @Override
+  public void onEvents(List<OrderEvent> events) {
+    for(OrderEvent event : events) {
+      AbstractOrder order = event.getOrder();
+
+      if(event.getType() == OrderEvent.Type.CREATED) {
+        // 還原的處理中或已完成訂單不會過期
+        if(order instanceof Order && order.getStatus() == OrderStatus.WAITING) {
+          schedule((Order) order);
+        }
+      } else {
+        cancel(order.getId());
+      }
+    }
+  }
+
+  // 排定訂單的過期時間，只在建立時換算一次，之後不再讀取目前時間
+  public void schedule(Order order) {
+    long expiryMillis = order.getExpiryTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    long delayNanos = TimeUnit.MILLISECONDS.toNanos(expiryMillis - System.currentTimeMillis());
+    Timer timer = new Timer(order, System.nanoTime() - this.startNanos + delayNanos);
+
+    Timer previous = this.timers.put(order.getId(), timer);
+    if(previous != null) {
+      cancelTimer(previous);
+    }
+    this.scheduledTimers.offer(timer);
+
+    if(this.idle) {
+      Thread sweeper = this.sweeper;
+      if(sweeper != null) {
+        LockSupport.unpark(sweeper);
+      }
+    }
+  }
+
+  // 取消訂單的計時器，實際從格子移除由掃描執行緒在下一個 tick 處理
+  public boolean cancel(long id) {
+    Timer timer = this.timers.remove(id);
+    return timer != null && cancelTimer(timer);
+  }
+
+  private boolean cancelTimer(Timer timer) {
+    if(!timer.state.compareAndSet(Timer.PENDING, Timer.CANCELLED)) {
+      return false;
+    }
+
+    this.cancelledTimers.offer(timer);
+    return true;
+  }
+
+  private void sweepLoop() {
+    try {
+      while(!Thread.currentThread().isInterrupted()) {
+        waitForNextTick();
+
+        removeCancelledTimers();
+        transferScheduledTimers();
+
+        // 只處理指針指到的這一格，成本與這一格的計時器數成正比
+        List<Timer> expired = new ArrayList<>();
+        this.wheel[(int) (this.tick & this.mask)].expire(expired);
+        this.tick++;
+
+        if(!expired.isEmpty()) {
+          expireOrders(expired);
+        }
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  // 睡到下一個 tick；沒有任何計時器時停下來，直到排定新的計時器
+  private void waitForNextTick() throws InterruptedException {
+    if(this.timers.isEmpty() && this.scheduledTimers.isEmpty()) {
+      removeCancelledTimers();
+
+      this.idle = true;
+      try {
+        // 設定 idle 之後再檢查一次，避免錯過剛好排定的計時器
+        while(this.timers.isEmpty() && this.scheduledTimers.isEmpty()) {
+          LockSupport.park(this);
+          if(Thread.interrupted()) {
+            throw new InterruptedException();
+          }
+        }
+      } finally {
+        this.idle = false;
+      }
+
+      // 格子都是空的，指針直接跳到目前的時間
+      this.tick = Math.max(this.tick, (System.nanoTime() - this.startNanos) / this.tickNanos);
+    }
+
+    long sleepNanos = this.startNanos + (this.tick + 1) * this.tickNanos - System.nanoTime();
+    if(sleepNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(sleepNanos);
+    }
+  }
+
+  private void removeCancelledTimers() {
+    Timer timer;
+    while((timer = this.cancelledTimers.poll()) != null) {
+      if(timer.bucket != null) {
+        timer.bucket.remove(timer);
+      }
+    }
+  }
+
+  // 把新的計時器放進到期的格子，已經過期的放進目前這一格
+  private void transferScheduledTimers() {
+    Timer timer;
+    while((timer = this.scheduledTimers.poll()) != null) {
+      if(timer.state.get() != Timer.PENDING) {
+        continue;
+      }
+
+      long expiryTick = timer.deadlineNanos / this.tickNanos;
+      timer.remainingRounds = Math.max(0, (expiryTick - this.tick) >> Integer.numberOfTrailingZeros(this.wheel.length));
+      this.wheel[(int) (Math.max(expiryTick, this.tick) & this.mask)].add(timer);
+    }
+  }
+
+  // 一批到期的訂單一起處理，已經開始製作的訂單不會被取消
+  private void expireOrders(List<Timer> expired) {
+    for(Timer timer : expired) {
+      this.timers.remove(timer.order.getId(), timer);
+
+      if(timer.order.expire()) {
+        this.producer.recordStatus(timer.order);
+        this.expiredCount.increment();
+      }
+    }
+  }
+
+  // 尚未到期的計時器數
+  public int getPendingCount() {
+    return this.timers.size();
+  }
+
+  // 因為過期而取消的訂單數
+  public long getExpiredCount() {
+    return this.expiredCount.sum();
+  }
+
+  public long getTickMillis() {
+    return TimeUnit.NANOSECONDS.toMillis(this.tickNanos);
+  }
+}
+
+/*
+用途：等待中的訂單超過 24 小時自動取消，不必等到有人處理時才檢查。
+建立訂單時排定計時器，開始製作、完成或取消時取消計時器，到期的訂單整批處理。
+大量等待中的訂單只佔用計時器物件，每個 tick 的成本只和目前這一格有關。
+ */
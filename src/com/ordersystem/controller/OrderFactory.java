@@ -2,20 +2,16 @@ package com.ordersystem.controller;
 
 import com.ordersystem.model.MenuItem;
 import com.ordersystem.model.Order;
-import java.util.Random;
 
 public class OrderFactory {
-  private static final Random random = new Random(); // 隨機數產生器
+  private static final OrderIdGenerator idGenerator = OrderIdGenerator.getDefault(); // 訂單編號產生器
 
   // 訂單創建方法
   public static Order createNextOrder(MenuItem item, int quantity) {
     // 驗證數量
     if(OrderValidator.isValidQuantity(quantity + "")) {
-      // 生成訂單 ID
-      long id = Long.parseLong(
-        System.currentTimeMillis() + // 時間戳記 -> 13位數
-        String.format("%04d", random.nextInt(10000)) // 隨機數 -> 4位數
-      );
+      // 生成訂單 ID：時間戳記、節點與序號組成的 17 位數
+      long id = idGenerator.nextId();
 
       // 創建訂單
       Order order = new Order(id);
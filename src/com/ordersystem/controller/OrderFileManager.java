@@ -1,5 +1,6 @@
 package com.ordersystem.controller;
 
+import com.ordersystem.model.MenuCatalog;
 import com.ordersystem.model.MenuItem;
 import com.ordersystem.model.Order;
 import com.ordersystem.model.OrderStatus;
@@ -9,15 +10,34 @@ import java.io.FileReader;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.EnumSet;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 public class OrderFileManager {
   // 定義訂單檔案的欄位名稱
@@ -38,86 +58,615 @@ public class OrderFileManager {
     }
   };
 
-  private final String BASE_DIRECTORY = "orders"; // 儲存檔案的資料夾
+  private static final String DEFAULT_DIRECTORY = "orders"; // 預設儲存檔案的資料夾
+  private static final DateTimeFormatter PARTITION_FORMAT = DateTimeFormatter.ISO_LOCAL_DATE; // 分區資料夾名稱
   private final ReadWriteLock lock = new ReentrantReadWriteLock(); // 讀寫鎖
+  private final File baseDirectory; // 儲存檔案的資料夾
+  private final StorageFormat format; // 快照的儲存格式
+  private OrderJournal journal; // 訂單日誌，記錄快照之後的所有變更
+  private long lastSnapshotMillis = 0; // 上一個快照檔名的時間，只在持有寫入鎖時存取
+  private final Map<File, OrderIndex> indexes = new ConcurrentHashMap<>(); // 已開啟的區段索引
 
   public OrderFileManager() {
-    File directory = new File(BASE_DIRECTORY);
+    this(StorageFormat.TEXT);
+  }
+
+  public OrderFileManager(StorageFormat format) {
+    this(new File(DEFAULT_DIRECTORY), format);
+  }
+
+  public OrderFileManager(File baseDirectory, StorageFormat format) {
+    this.baseDirectory = baseDirectory;
+    this.format = format;
 
-    if(!directory.exists()) {
-      directory.mkdirs(); // 如果資料夾不存在的話就建立
+    if(!baseDirectory.exists()) {
+      baseDirectory.mkdirs(); // 如果資料夾不存在的話就建立
     }
   }
 
   // 儲存訂單方法
   public void saveOrders(List<Order> orders) {
-    // 產生檔案名稱，格式：orders-年-月-日-時-分-秒.txt
-    String filename = "orders-" + LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss")) + ".txt";
-
-    File file = new File(BASE_DIRECTORY, filename);
     lock.writeLock().lock(); // 取得寫入鎖
 
-    try(PrintWriter writer = new PrintWriter(new FileWriter(file, false))) {
+    try {
+      writeSnapshot(orders);
+    } catch(IOException e) {
+      e.printStackTrace();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // 開啟訂單日誌，之後每次新增與狀態變更都只追加一筆紀錄
+  public OrderJournal openJournal() throws IOException {
+    lock.writeLock().lock();
+
+    try {
+      if(this.journal == null) {
+        this.journal = createJournal(this.baseDirectory);
+      }
+
+      return this.journal;
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // 測試可以覆寫，在日誌寫入的前後插入其他動作
+  OrderJournal createJournal(File directory) throws IOException {
+    return new OrderJournal(directory);
+  }
+
+  // 壓縮：把目前的訂單寫成新的快照，並刪除已被快照涵蓋的日誌區段
+  public void compact(List<Order> orders) {
+    lock.writeLock().lock();
+
+    try {
+      // 先輪替日誌，快照之後的變更會寫到新的區段
+      List<File> sealedSegments = this.journal == null ? new ArrayList<>() : this.journal.rotate();
+
+      writeSnapshot(orders);
+
+      // 快照成功寫入後，舊的日誌區段才可以刪除
+      for(File segment : sealedSegments) {
+        if(!segment.delete()) {
+          System.err.println("無法刪除日誌區段：" + segment.getName());
+        }
+      }
+    } catch(IOException e) {
+      e.printStackTrace();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // 輪替日誌，回傳已封存的區段；尚未開啟日誌時回傳空列表
+  List<File> rotateJournal() throws IOException {
+    lock.writeLock().lock();
+
+    try {
+      return this.journal == null ? new ArrayList<>() : this.journal.rotate();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // 增量檢查點：只寫入變更過的訂單，成功後刪除已被涵蓋的日誌區段
+  void writeCheckpoint(List<Order> orders, List<File> sealedSegments) throws IOException {
+    lock.writeLock().lock();
+
+    try {
+      if(!orders.isEmpty()) {
+        writeSnapshot(orders);
+      }
+
+      for(File segment : sealedSegments) {
+        if(segment.exists() && !segment.delete()) {
+          System.err.println("無法刪除日誌區段：" + segment.getName());
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // 壓縮訂單資料夾：合併歷史快照並套用保留規則，寫入者不會被阻擋
+  public CompactionReport compactArchive(RetentionPolicy policy) {
+    try {
+      CompactionReport report = new OrderCompactor(this, this.baseDirectory).compact(policy);
+      System.out.println("訂單壓縮：" + report);
+      return report;
+    } catch(IOException e) {
+      e.printStackTrace();
+      return CompactionReport.empty();
+    }
+  }
+
+  // 以合併後的分區區段取代舊快照，回傳新區段的總大小
+  long replaceSnapshots(File[] inputs, Map<LocalDate, List<Order>> partitions, String filename) throws IOException {
+    // 先寫入暫存檔，這段時間不持有鎖
+    Map<File, List<Order>> staged = new LinkedHashMap<>();
+    Map<File, long[]> stagedOffsets = new HashMap<>();
+
+    for(Map.Entry<LocalDate, List<Order>> partition : partitions.entrySet()) {
+      File partitionDirectory = partitionDirectory(partition.getKey());
+      partitionDirectory.mkdirs();
+
+      File temporaryFile = new File(partitionDirectory, filename + ".tmp");
+      stagedOffsets.put(temporaryFile, BinaryOrderSegment.write(temporaryFile, partition.getValue()));
+      staged.put(temporaryFile, partition.getValue());
+    }
+
+    long bytesAfter = 0;
+
+    // 只有替換檔案的步驟需要寫入鎖
+    lock.writeLock().lock();
+    try {
+      List<File> outputs = new ArrayList<>();
+
+      for(Map.Entry<File, List<Order>> entry : staged.entrySet()) {
+        File temporaryFile = entry.getKey();
+        File file = new File(temporaryFile.getParentFile(), filename);
+        Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        List<Order> orders = entry.getValue();
+        long[] ids = new long[orders.size()];
+        for(int i = 0; i < ids.length; i++) {
+          ids[i] = orders.get(i).getId();
+        }
+        OrderIndex.write(OrderIndex.fileFor(file), ids, stagedOffsets.get(temporaryFile));
+
+        this.indexes.remove(file);
+        outputs.add(file);
+        bytesAfter += file.length() + OrderIndex.fileFor(file).length();
+      }
+
+      for(File input : inputs) {
+        if(outputs.contains(input)) {
+          continue;
+        }
+
+        this.indexes.remove(input);
+        OrderIndex.fileFor(input).delete();
+        if(!input.delete()) {
+          System.err.println("無法刪除快照：" + input.getName());
+        }
+
+        // 分區資料夾清空後一併刪除
+        File parent = input.getParentFile();
+        String[] remaining = parent.list();
+        if(!parent.equals(this.baseDirectory) && remaining != null && remaining.length == 0) {
+          parent.delete();
+        }
+      }
+    } finally {
+      lock.writeLock().unlock();
+    }
+
+    return bytesAfter;
+  }
+
+  // 關閉訂單日誌，確保所有紀錄都已寫入磁碟
+  public void closeJournal() {
+    lock.writeLock().lock();
+
+    try {
+      if(this.journal != null) {
+        this.journal.close();
+        this.journal = null;
+      }
+    } catch(IOException e) {
+      e.printStackTrace();
+    } finally {
+      lock.writeLock().unlock();
+    }
+  }
+
+  // 寫入快照檔案，呼叫前必須持有寫入鎖
+  private void writeSnapshot(List<Order> orders) throws IOException {
+    // 產生檔案名稱，格式：orders-年-月-日-時-分-秒-毫秒.txt（二進位格式為 .seg）
+    // 增量檢查點可能在同一秒內寫入多次，時間必須嚴格遞增才不會覆蓋前一個快照
+    long millis = System.currentTimeMillis();
+    if(millis <= this.lastSnapshotMillis) {
+      millis = this.lastSnapshotMillis + 1;
+    }
+    this.lastSnapshotMillis = millis;
+
+    LocalDateTime snapshotTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    String filename = "orders-" + snapshotTime.format(DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss-SSS")) + this.format.getExtension();
+
+    if(this.format == StorageFormat.BINARY) {
+      // 二進位區段依訂單建立日期分區，每個分區一個資料夾
+      Map<LocalDate, List<Order>> partitions = new TreeMap<>();
+      for(Order order : orders) {
+        LocalDate day = order.getTime() == null ? LocalDate.now() : order.getTime().toLocalDate();
+        partitions.computeIfAbsent(day, key -> new ArrayList<>()).add(order);
+      }
+
+      for(Map.Entry<LocalDate, List<Order>> partition : partitions.entrySet()) {
+        File partitionDirectory = partitionDirectory(partition.getKey());
+        partitionDirectory.mkdirs();
+        writeSegment(new File(partitionDirectory, filename), partition.getValue());
+      }
+      return;
+    }
+
+    File file = new File(this.baseDirectory, filename);
+    // 先寫入暫存檔再改名，讀取端不會看到寫到一半的快照
+    File temporaryFile = new File(this.baseDirectory, filename + ".tmp");
+
+    writeTextSnapshot(temporaryFile, orders);
+    Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // 寫入一個二進位區段與它的索引
+  private void writeSegment(File file, List<Order> orders) throws IOException {
+    File temporaryFile = new File(file.getParentFile(), file.getName() + ".tmp");
+
+    long[] offsets = BinaryOrderSegment.write(temporaryFile, orders);
+    Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+    // 只為新的區段寫索引，不需要重建其他區段的索引
+    long[] ids = new long[orders.size()];
+    for(int i = 0; i < ids.length; i++) {
+      ids[i] = orders.get(i).getId();
+    }
+    OrderIndex.write(OrderIndex.fileFor(file), ids, offsets);
+    this.indexes.remove(file);
+  }
+
+  // 分區資料夾，格式：orders/年-月-日
+  private File partitionDirectory(LocalDate day) {
+    return new File(this.baseDirectory, day.format(PARTITION_FORMAT));
+  }
+
+  private void writeTextSnapshot(File file, List<Order> orders) throws IOException {
+    try(PrintWriter writer = new PrintWriter(new FileWriter(file, StandardCharsets.UTF_8, false))) {
       for(Order order : orders) {
         writer.println("==== Orders Details ====");
         writer.println(OrderColumnName.ID.getColumnName() + " " + order.getId());
         writer.println(OrderColumnName.TIME.getColumnName() + " " + order.getTime());
         writer.println(OrderColumnName.STATUS.getColumnName() + " " + order.getStatus());
 
+        // 名稱以日誌的規則跳脫換行，讀取時從右邊切出價格與數量，名稱可以含有 "-"
         writer.println(OrderColumnName.ITEM.getColumnName());
         for(Map.Entry<MenuItem, Integer> item : order.getItems().entrySet()) {
-          writer.printf("%s-%.1f-%d%n",
-            item.getKey().getName(),
+          writer.printf(Locale.ROOT, "%s-%.2f-%d%n",
+            OrderJournal.escape(item.getKey().getName()),
             item.getKey().getPrice(),
             item.getValue()
           );
         }
         writer.println("========================");
       }
-    } catch(IOException e) {
-      e.printStackTrace();
-    } finally {
-      lock.writeLock().unlock();
+
+      if(writer.checkError()) {
+        throw new IOException("寫入快照失敗：" + file.getName());
+      }
     }
   }
 
   // 讀取訂單方法
   public List<Order> readAllOrders() {
+    RecoveryReport report = recoverOrders();
+    return report.getOrders();
+  }
+
+  // 從所有快照與日誌重建訂單，並回報載入成本
+  public RecoveryReport recoverOrders() {
     // 檢查目錄
-    File directory = new File(BASE_DIRECTORY);
+    File directory = this.baseDirectory;
     if(!directory.exists() || !directory.isDirectory()) {
+      return new RecoveryReport(new ArrayList<>(), 0, 0, 0, 0);
+    }
+
+    lock.readLock().lock(); // 取得讀取鎖
+
+    try {
+      RecoveryReport report = new OrderRecovery(directory).recover();
+      System.out.println("訂單還原：" + report);
+      return report;
+    } catch(IOException e) {
+      e.printStackTrace();
+      return new RecoveryReport(new ArrayList<>(), 0, 0, 0, 0);
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // 以訂單編號查詢單一訂單：由新到舊查各區段的索引，再套用日誌中較新的狀態
+  public Order findOrder(long id) {
+    File directory = this.baseDirectory;
+
+    lock.readLock().lock();
+    try {
+      File[] snapshots = listSnapshots(directory);
+      Order found = null;
+
+      for(int i = snapshots.length - 1; i >= 0 && found == null; i--) {
+        found = findInSnapshot(snapshots[i], id);
+      }
+
+      // 日誌中只套用這一筆訂單的紀錄
+      for(File segment : OrderJournal.listSegments(directory)) {
+        found = OrderJournal.replay(segment, id, found);
+      }
+
+      return found;
+    } catch(IOException e) {
+      e.printStackTrace();
+      return null;
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  private Order findInSnapshot(File snapshot, long id) throws IOException {
+    if(StorageFormat.fromFileName(snapshot.getName()) == StorageFormat.BINARY) {
+      // 查詢只持有讀取鎖，同一個區段同時查詢時由 computeIfAbsent 保證只有一個執行緒開啟或重建索引
+      OrderIndex index;
+      try {
+        index = this.indexes.computeIfAbsent(snapshot, segment -> {
+          try {
+            return OrderIndex.openOrRebuild(segment);
+          } catch(IOException e) {
+            throw new UncheckedIOException(e);
+          }
+        });
+      } catch(UncheckedIOException e) {
+        throw e.getCause();
+      }
+
+      long offset = index.find(id);
+      return offset < 0 ? null : BinaryOrderSegment.readAt(snapshot, offset);
+    }
+
+    // 舊的文字快照沒有索引，只能逐筆掃描
+    try(OrderCursor cursor = openSnapshotCursor(snapshot, OrderFilter.all())) {
+      while(cursor.hasNext()) {
+        Order order = cursor.next();
+        if(order.getId() == id) {
+          return order;
+        }
+      }
+    } catch(UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    return null;
+  }
+
+  // 查詢建立時間在 [from, to) 之間且狀態符合的訂單，只開啟範圍內的分區
+  public List<Order> ordersBetween(LocalDateTime from, LocalDateTime to, OrderStatus status) {
+    OrderFilter filter = new OrderFilter(status == null ? EnumSet.allOf(OrderStatus.class) : EnumSet.of(status), from, to);
+    File directory = this.baseDirectory;
+
+    lock.readLock().lock();
+    try {
+      // 結束時間剛好是午夜時，不需要開啟那一天的分區
+      LocalDate toDay = to.toLocalTime().equals(LocalTime.MIDNIGHT) ? to.toLocalDate().minusDays(1) : to.toLocalDate();
+      File[] snapshots = listSnapshots(directory, from.toLocalDate(), toDay);
+
+      // 同一筆訂單可能出現在多個快照中，以較新的快照為準（不過濾狀態，避免舊狀態留下）
+      OrderFilter rangeFilter = new OrderFilter(EnumSet.allOf(OrderStatus.class), from, to);
+      Map<Long, Order> orderById = new LinkedHashMap<>();
+      for(File snapshot : snapshots) {
+        try(OrderCursor cursor = openSnapshotCursor(snapshot, rangeFilter)) {
+          while(cursor.hasNext()) {
+            Order order = cursor.next();
+            orderById.put(order.getId(), order);
+          }
+        }
+      }
+
+      for(File segment : OrderJournal.listSegments(directory)) {
+        OrderJournal.replay(segment, orderById);
+      }
+
+      List<Order> result = new ArrayList<>();
+      for(Order order : orderById.values()) {
+        if(filter.matches(order.getStatus(), order.getTime())) {
+          result.add(order);
+        }
+      }
+
+      return result;
+    } catch(IOException | UncheckedIOException e) {
+      e.printStackTrace();
       return new ArrayList<>();
+    } finally {
+      lock.readLock().unlock();
+    }
+  }
+
+  // 計算 [from, to) 之間已完成訂單的營業額，例如日報或週報
+  public double revenueBetween(LocalDateTime from, LocalDateTime to) {
+    long sum = 0;
+
+    for(Order order : ordersBetween(from, to, OrderStatus.COMPLETED)) {
+      sum += order.getTotalCents();
+    }
+
+    return sum / 100.0;
+  }
+
+  // 開啟涵蓋所有快照的游標（由舊到新），同一筆訂單在不同快照中可能出現多次
+  public OrderCursor openCursor(OrderFilter filter) {
+    File directory = this.baseDirectory;
+    File[] snapshots;
+
+    lock.readLock().lock();
+    try {
+      snapshots = listSnapshots(directory);
+    } finally {
+      lock.readLock().unlock();
     }
 
-    // 取得所有訂單檔案
-    File[] ordersFiles = directory.listFiles((dir, name) -> name.startsWith("orders-") && name.endsWith(".txt"));
+    return new ArchiveCursor(snapshots, filter);
+  }
+
+  // 以 Stream 的方式逐筆讀取訂單，使用完畢必須關閉
+  public Stream<Order> streamOrders(OrderFilter filter) {
+    return stream(openCursor(filter));
+  }
+
+  // 把游標包成 Stream，關閉 Stream 時一併關閉游標（提早結束也一樣）
+  static Stream<Order> stream(OrderCursor cursor) {
+    return StreamSupport.stream(Spliterators.spliteratorUnknownSize(cursor, Spliterator.ORDERED | Spliterator.NONNULL), false)
+      .onClose(() -> {
+        try {
+          cursor.close();
+        } catch(IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      });
+  }
+
+  // 列出所有快照檔案（由舊到新），包含根目錄與所有分區
+  static File[] listSnapshots(File directory) {
+    return listSnapshots(directory, null, null);
+  }
+
+  // 列出根目錄的快照與日期落在 [fromDay, toDay] 的分區快照，null 表示不限制
+  static File[] listSnapshots(File directory, LocalDate fromDay, LocalDate toDay) {
+    List<File> snapshots = new ArrayList<>();
+    addSnapshots(directory, snapshots);
+
+    File[] partitions = directory.listFiles(File::isDirectory);
+    if(partitions != null) {
+      for(File partition : partitions) {
+        LocalDate day = parsePartition(partition.getName());
 
-    // 排序檔案 (最新的在前) 降冪排序
-    Arrays.sort(ordersFiles, (file1, file2) -> file2.getName().compareTo(file1.getName()));
+        if(day == null || (fromDay != null && day.isBefore(fromDay)) || (toDay != null && day.isAfter(toDay))) {
+          continue;
+        }
+
+        addSnapshots(partition, snapshots);
+      }
+    }
 
-    // 讀取最新的檔案
-    File mostRecentFile = ordersFiles[0];
+    // 檔名包含時間，排序後由舊到新
+    snapshots.sort((file1, file2) -> file1.getName().compareTo(file2.getName()));
+    return snapshots.toArray(new File[0]);
+  }
+
+  private static void addSnapshots(File directory, List<File> snapshots) {
+    File[] files = directory.listFiles((dir, name) -> name.startsWith("orders-") && StorageFormat.fromFileName(name) != null);
 
+    if(files != null) {
+      snapshots.addAll(Arrays.asList(files));
+    }
+  }
+
+  // 解析分區資料夾名稱，不是分區時回傳 null
+  private static LocalDate parsePartition(String name) {
+    try {
+      return LocalDate.parse(name, PARTITION_FORMAT);
+    } catch(DateTimeParseException e) {
+      return null;
+    }
+  }
+
+  // 依副檔名選擇解碼器開啟快照
+  static OrderCursor openSnapshotCursor(File snapshot, OrderFilter filter) throws IOException {
+    if(StorageFormat.fromFileName(snapshot.getName()) == StorageFormat.BINARY) {
+      return BinaryOrderSegment.open(snapshot, filter);
+    }
+
+    return new TextSnapshotCursor(new BufferedReader(new FileReader(snapshot, StandardCharsets.UTF_8)), filter);
+  }
+
+  // 讀取單一快照的所有訂單
+  static List<Order> readSnapshot(File snapshot) throws IOException {
     List<Order> allOrders = new ArrayList<>();
 
-    lock.readLock().lock(); // 取得讀取鎖
+    try(OrderCursor cursor = openSnapshotCursor(snapshot, OrderFilter.all())) {
+      while(cursor.hasNext()) {
+        allOrders.add(cursor.next());
+      }
+    } catch(UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    return allOrders;
+  }
+
+  // 逐行解析文字快照的游標
+  private static class TextSnapshotCursor implements OrderCursor {
+    private final BufferedReader reader;
+    private final OrderFilter filter;
+    private Order next; // 下一筆符合條件的訂單
+
+    TextSnapshotCursor(BufferedReader reader, OrderFilter filter) {
+      this.reader = reader;
+      this.filter = filter;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if(this.next == null) {
+        try {
+          this.next = readOrder();
+        } catch(IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }
+
+      return this.next != null;
+    }
+
+    @Override
+    public Order next() {
+      if(!hasNext()) {
+        throw new NoSuchElementException();
+      }
 
-    // 讀取檔案內容
-    try(BufferedReader reader = new BufferedReader(new FileReader(mostRecentFile))) {
+      Order order = this.next;
+      this.next = null;
+      return order;
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.reader.close();
+    }
+
+    // 讀到下一筆符合條件的訂單為止，檔案結束時回傳 null
+    private Order readOrder() throws IOException {
       // 暫存當前讀取的訂單資訊
       String line;
       long orderId = 0;
       LocalDateTime time = null;
       String status = null;
+      boolean skip = false; // 狀態或時間不符合，略過餐點項目
+      boolean inItems = false; // 位於餐點項目區塊內
       Map<MenuItem, Integer> items = new HashMap<>();
 
-      while((line = reader.readLine()) != null) {
+      while((line = this.reader.readLine()) != null) {
+        // 讀取餐點項目，名稱可能以欄位名稱開頭，所以先於欄位判斷
+        if(inItems && !line.equals("========================")) {
+          if(skip) {
+            continue;
+          }
+
+          int quantityStart = line.lastIndexOf('-');
+          int priceStart = quantityStart > 0 ? line.lastIndexOf('-', quantityStart - 1) : -1;
+          if(priceStart >= 0) {
+            String name = OrderJournal.unescape(line.substring(0, priceStart));
+            double price = Double.parseDouble(line.substring(priceStart + 1, quantityStart));
+            int quantity = Integer.parseInt(line.substring(quantityStart + 1));
+            MenuItem menuItem = MenuCatalog.intern(name, price);
+            items.put(menuItem, quantity);
+          }
+        }
         // 開始新訂單
-        if(line.startsWith("==== Orders Details ====")) {
+        else if(line.startsWith("==== Orders Details ====")) {
           // 重置所有變數
           orderId = 0;
           time = null;
           status = null;
+          skip = false;
+          inItems = false;
           items = new HashMap<>();
         }
         // 讀取訂單ID
@@ -130,46 +679,95 @@ public class OrderFileManager {
           String timeString = line.substring(OrderColumnName.TIME.getColumnName().length()).trim();
           time = LocalDateTime.parse(timeString);
         }
-        // 讀取訂單狀態
+        // 讀取訂單狀態，狀態與時間都已知，可以先判斷過濾條件
         else if(line.startsWith(OrderColumnName.STATUS.getColumnName())) {
           status = line.substring(OrderColumnName.STATUS.getColumnName().length()).trim();
+          skip = !this.filter.matches(OrderStatus.valueOf(status), time);
         }
-        // 讀取餐點項目
-        else if(line.contains("-")) {
-          String[] parts = line.split("-");
-          if(parts.length == 3) {
-            String name = parts[0];
-            double price = Double.parseDouble(parts[1]);
-            int quantity = Integer.parseInt(parts[2]);
-            MenuItem menuItem = new MenuItem(name, price, "");
-            items.put(menuItem, quantity);
-          }
+        // 餐點項目區塊開始
+        else if(line.startsWith(OrderColumnName.ITEM.getColumnName())) {
+          inItems = true;
         }
-
         // 訂單結束，建立訂單物件
-        else if(line.equals("========================") && orderId != 0) {
+        else if(line.equals("========================")) {
+          inItems = false;
+          if(orderId == 0 || skip) {
+            continue;
+          }
+
           Order order = new Order(orderId);
           order.setTime(time);
-          order.setStatus(OrderStatus.valueOf(status));
+          order.restoreStatus(OrderStatus.valueOf(status));
           for(Map.Entry<MenuItem, Integer> entry : items.entrySet()) {
             order.addItem(entry.getKey(), entry.getValue());
           }
-          allOrders.add(order);
+          return order;
         }
       }
 
-    } catch(IOException e) {
-      e.printStackTrace();
-    } finally {
-      lock.readLock().unlock();
+      return null;
     }
+  }
 
-    return allOrders;
+  // 依序串接多個快照的游標，一次只開啟一個檔案
+  private static class ArchiveCursor implements OrderCursor {
+    private final File[] snapshots;
+    private final OrderFilter filter;
+    private int nextSnapshot = 0;
+    private OrderCursor current;
+
+    ArchiveCursor(File[] snapshots, OrderFilter filter) {
+      this.snapshots = snapshots;
+      this.filter = filter;
+    }
+
+    @Override
+    public boolean hasNext() {
+      try {
+        while(this.current == null || !this.current.hasNext()) {
+          if(this.current != null) {
+            this.current.close();
+            this.current = null;
+          }
+
+          if(this.nextSnapshot >= this.snapshots.length) {
+            return false;
+          }
+
+          this.current = openSnapshotCursor(this.snapshots[this.nextSnapshot++], this.filter);
+        }
+      } catch(IOException e) {
+        throw new UncheckedIOException(e);
+      }
+
+      return true;
+    }
+
+    @Override
+    public Order next() {
+      if(!hasNext()) {
+        throw new NoSuchElementException();
+      }
+
+      return this.current.next();
+    }
+
+    @Override
+    public void close() throws IOException {
+      this.nextSnapshot = this.snapshots.length;
+
+      if(this.current != null) {
+        this.current.close();
+        this.current = null;
+      }
+    }
   }
 }
 
 /*
 將訂單寫入檔案
 與 Model 層的 Order 搭配，將訂單資料儲存為文字。
+平時的變更寫入 OrderJournal，快照只在壓縮時產生。
+二進位快照依訂單日期分區，區間查詢只需要開啟範圍內的分區。
 是 IO 相關的邏輯，抽離出來符合 SRP 原則。
  */
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.OrderStatus;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.Set;
+
+public class OrderFilter {
+  private final Set<OrderStatus> statuses; // 允許的狀態
+  private final LocalDateTime from; // 起始時間（含），null 表示不限制
+  private final LocalDateTime to; // 結束時間（不含），null 表示不限制
+
+  public OrderFilter(Set<OrderStatus> statuses, LocalDateTime from, LocalDateTime to) {
+    this.statuses = statuses.isEmpty() ? EnumSet.noneOf(OrderStatus.class) : EnumSet.copyOf(statuses);
+    this.from = from;
+    this.to = to;
+  }
+
+  // 不過濾任何訂單
+  public static OrderFilter all() {
+    return new OrderFilter(EnumSet.allOf(OrderStatus.class), null, null);
+  }
+
+  // 只保留指定狀態的訂單
+  public static OrderFilter withStatus(OrderStatus first, OrderStatus... rest) {
+    return new OrderFilter(EnumSet.of(first, rest), null, null);
+  }
+
+  // 只保留建立時間在 [from, to) 之間的訂單
+  public static OrderFilter between(LocalDateTime from, LocalDateTime to) {
+    return new OrderFilter(EnumSet.allOf(OrderStatus.class), from, to);
+  }
+
+  public LocalDateTime getFrom() {
+    return this.from;
+  }
+
+  public LocalDateTime getTo() {
+    return this.to;
+  }
+
+  // 只看狀態與時間就能判斷，解碼器在讀取餐點項目之前呼叫
+  public boolean matches(OrderStatus status, LocalDateTime time) {
+    if(!this.statuses.contains(status)) {
+      return false;
+    }
+
+    if(this.from != null && (time == null || time.isBefore(this.from))) {
+      return false;
+    }
+
+    return this.to == null || (time != null && time.isBefore(this.to));
+  }
+}
+
+/*
+用途：串流讀取訂單時的過濾條件（狀態、時間區間）。
+條件會下推到解碼器，不符合的訂單不會解析餐點項目，也不會建立物件。
+ */
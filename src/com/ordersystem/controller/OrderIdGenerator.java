@@ -0,0 +1,72 @@
+package com.ordersystem.controller;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+訂單編號的組成（由高位到低位）：
+  ID_BASE + [ 距離 2024-01-01 的毫秒數(41 bits) | 節點編號(5 bits) | 同一毫秒內的序號(10 bits) ]
+56 bits 最大約 7.2 * 10^16，加上 2 * 10^16 之後仍然是 17 位數，
+而且大於舊格式（時間戳記 + 4 位亂數）產生過的所有編號。
+ */
+public class OrderIdGenerator {
+  private static final long ID_BASE = 20_000_000_000_000_000L; // 讓所有編號固定為 17 位數
+  private static final long EPOCH_MILLIS = 1704067200000L; // 2024-01-01T00:00:00Z
+  private static final int NODE_BITS = 5;
+  private static final int SEQUENCE_BITS = 10;
+  private static final long MAX_MILLIS = (1L << 41) - 1;
+  private static final long MAX_SEQUENCE = (1L << SEQUENCE_BITS) - 1;
+  public static final int MAX_NODE_ID = (1 << NODE_BITS) - 1;
+
+  // 節點編號來自系統屬性 ordersystem.node，多個執行個體必須設定不同的值
+  private static final OrderIdGenerator DEFAULT = new OrderIdGenerator(Integer.getInteger("ordersystem.node", 0));
+
+  private final long nodeId;
+  private final AtomicLong state = new AtomicLong(0); // 最後使用的毫秒數 << SEQUENCE_BITS | 序號
+
+  public OrderIdGenerator(int nodeId) {
+    if(nodeId < 0 || nodeId > MAX_NODE_ID) {
+      throw new IllegalArgumentException("節點編號必須介於 0 到 " + MAX_NODE_ID + "：" + nodeId);
+    }
+
+    this.nodeId = nodeId;
+  }
+
+  public static OrderIdGenerator getDefault() {
+    return DEFAULT;
+  }
+
+  // 產生下一個編號，只用 CAS 更新狀態，不上鎖也不配置物件
+  public long nextId() {
+    while(true) {
+      long current = this.state.get();
+      long lastMillis = current >>> SEQUENCE_BITS;
+      long nowMillis = System.currentTimeMillis() - EPOCH_MILLIS;
+      long next;
+
+      if(nowMillis > lastMillis) {
+        next = nowMillis << SEQUENCE_BITS;
+      } else if((current & MAX_SEQUENCE) < MAX_SEQUENCE) {
+        // 同一毫秒（或時鐘倒退）時遞增序號
+        next = current + 1;
+      } else {
+        // 序號用完時借用下一毫秒，不需要等待時鐘
+        next = (lastMillis + 1) << SEQUENCE_BITS;
+      }
+
+      if(this.state.compareAndSet(current, next)) {
+        long millis = next >>> SEQUENCE_BITS;
+        if(millis > MAX_MILLIS) {
+          throw new IllegalStateException("訂單編號的時間欄位已用盡");
+        }
+
+        return ID_BASE + ((millis << (NODE_BITS + SEQUENCE_BITS)) | (this.nodeId << SEQUENCE_BITS) | (next & MAX_SEQUENCE));
+      }
+    }
+  }
+}
+
+/*
+用途：Snowflake 風格的訂單編號產生器，取代字串串接加亂數的做法。
+同一個節點內靠原子序號保證不重複，不同執行個體靠節點編號區分。
+產生的編號仍然符合 OrderValidator.isValidOrderID 的 17 位數格式。
+ */
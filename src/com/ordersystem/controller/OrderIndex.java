@@ -0,0 +1,141 @@
+package com.ordersystem.controller;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/*
+索引檔格式（版本 1）：
+  檔頭 16 bytes：magic(4) 版本(2) 旗標(2) 項目數(4) 保留(4)
+  每個項目 16 bytes：訂單編號(8) 區段內位移(8)，依訂單編號遞增排序
+ */
+public class OrderIndex {
+  public static final String FILE_SUFFIX = ".idx"; // 索引檔名後綴，接在區段檔名之後
+  private static final int MAGIC = 0x4F524458; // "ORDX"
+  private static final short VERSION = 1;
+  private static final int HEADER_SIZE = 16;
+  private static final int ENTRY_SIZE = 16;
+
+  private final ByteBuffer buffer; // 映射到記憶體的索引內容
+  private final int count; // 項目數
+
+  private OrderIndex(ByteBuffer buffer, int count) {
+    this.buffer = buffer;
+    this.count = count;
+  }
+
+  // 區段對應的索引檔
+  public static File fileFor(File segment) {
+    return new File(segment.getParentFile(), segment.getName() + FILE_SUFFIX);
+  }
+
+  // 寫入索引檔，先寫暫存檔再改名；每次寫入使用自己的暫存檔，同時重建同一個索引時不會互相覆蓋
+  public static void write(File indexFile, long[] ids, long[] offsets) throws IOException {
+    Integer[] order = new Integer[ids.length];
+    for(int i = 0; i < order.length; i++) {
+      order[i] = i;
+    }
+    Arrays.sort(order, (index1, index2) -> Long.compare(ids[index1], ids[index2]));
+
+    Path temporaryFile = Files.createTempFile(indexFile.getParentFile().toPath(), indexFile.getName() + ".", ".tmp");
+
+    try(FileChannel channel = FileChannel.open(temporaryFile,
+          StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+      DataOutputStream output = new DataOutputStream(new BufferedOutputStream(Channels.newOutputStream(channel)));
+
+      output.writeInt(MAGIC);
+      output.writeShort(VERSION);
+      output.writeShort(0);
+      output.writeInt(ids.length);
+      output.writeInt(0);
+
+      for(int index : order) {
+        output.writeLong(ids[index]);
+        output.writeLong(offsets[index]);
+      }
+
+      output.flush();
+      channel.force(true);
+    } catch(IOException e) {
+      Files.deleteIfExists(temporaryFile);
+      throw e;
+    }
+
+    Files.move(temporaryFile, indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  // 以記憶體映射開啟索引檔
+  public static OrderIndex open(File indexFile) throws IOException {
+    try(FileChannel channel = FileChannel.open(indexFile.toPath(), StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+
+      if(buffer.remaining() < HEADER_SIZE || buffer.getInt(0) != MAGIC || buffer.getShort(4) != VERSION) {
+        throw new IOException("不是訂單索引檔案：" + indexFile.getName());
+      }
+
+      int count = buffer.getInt(8);
+      if((long) HEADER_SIZE + (long) count * ENTRY_SIZE > buffer.capacity()) {
+        throw new IOException("索引檔案不完整：" + indexFile.getName());
+      }
+
+      return new OrderIndex(buffer, count);
+    }
+  }
+
+  // 開啟區段的索引，索引不存在或損毀時重新建立
+  public static OrderIndex openOrRebuild(File segment) throws IOException {
+    File indexFile = fileFor(segment);
+
+    if(indexFile.exists()) {
+      try {
+        return open(indexFile);
+      } catch(IOException e) {
+        System.err.println("重新建立索引：" + e.getMessage());
+      }
+    }
+
+    long[][] entries = BinaryOrderSegment.scanOffsets(segment);
+    write(indexFile, entries[0], entries[1]);
+    return open(indexFile);
+  }
+
+  // 二分搜尋訂單編號，回傳區段內位移，找不到時回傳 -1
+  public long find(long id) {
+    int low = 0;
+    int high = this.count - 1;
+
+    while(low <= high) {
+      int middle = (low + high) >>> 1;
+      long middleId = this.buffer.getLong(HEADER_SIZE + middle * ENTRY_SIZE);
+
+      if(middleId < id) {
+        low = middle + 1;
+      } else if(middleId > id) {
+        high = middle - 1;
+      } else {
+        return this.buffer.getLong(HEADER_SIZE + middle * ENTRY_SIZE + 8);
+      }
+    }
+
+    return -1;
+  }
+
+  public int size() {
+    return this.count;
+  }
+}
+
+/*
+用途：訂單編號 → 區段檔案位移的附屬索引（sidecar），已排序、以記憶體映射讀取。
+每個區段寫入時同時寫出自己的索引，不需要重建整個封存的索引。
+查詢單一收據只需要一次二分搜尋與一次定位讀取，不必掃描整個檔案。
+ */
@@ -0,0 +1,505 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.MenuCatalog;
+import com.ordersystem.model.MenuItem;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+public class OrderJournal implements Closeable {
+  // 日誌紀錄的種類
+  private enum RecordType {
+    CREATE, // 新增訂單：編號、時間、狀態、餐點項目
+    STATUS  // 狀態變更：編號、新狀態
+  }
+
+  public static final String FILE_PREFIX = "journal-"; // 日誌區段檔名前綴
+  public static final String FILE_SUFFIX = ".log"; // 日誌區段檔名後綴
+  private static final String SEPARATOR = "\t"; // 欄位分隔字元
+  private static final DateTimeFormatter FILE_TIME_FORMAT = DateTimeFormatter.ofPattern("yyyy-MM-dd-HH-mm-ss-SSS");
+
+  private static final long COMMIT_INTERVAL_MILLIS = 20; // 群組提交的最長等待時間
+  private static final int COMMIT_BATCH_SIZE = 64; // 累積到這個筆數就立即提交
+
+  private final File directory; // 日誌所在資料夾
+  private final Object channelLock = new Object(); // 保護檔案通道的寫入與輪替
+  private final ReentrantLock lock = new ReentrantLock(); // 保護待提交緩衝區
+  private final Condition commitRequested = lock.newCondition(); // 通知提交執行緒
+  private final Condition committed = lock.newCondition(); // 通知等待同步的執行緒
+  private final Thread committer; // 群組提交執行緒
+
+  private StringBuilder pending = new StringBuilder(); // 尚未寫入磁碟的紀錄
+  private int pendingRecords = 0; // 緩衝區中的紀錄筆數
+  private long appendedSequence = 0; // 已加入緩衝區的紀錄總數
+  private long committedSequence = 0; // 已同步到磁碟的紀錄總數
+  private IOException commitFailure; // 第一次寫入失敗的原因，之後的 sync 都會丟出；持有 lock 時存取
+  private volatile boolean closed = false;
+
+  private FileChannel channel; // 目前使用中的日誌區段
+  private long lastSegmentMillis = 0; // 上一個區段檔名的時間，持有 channelLock 時存取
+  private File activeSegment;
+
+  public OrderJournal(File directory) throws IOException {
+    this.directory = directory;
+    openSegment();
+
+    this.committer = new Thread(this::commitLoop, "order-journal-committer");
+    this.committer.setDaemon(true);
+    this.committer.start();
+  }
+
+  // 記錄新增的訂單
+  public void appendCreated(AbstractOrder order) {
+    StringBuilder record = new StringBuilder();
+    record.append(RecordType.CREATE).append(SEPARATOR)
+      .append(order.getId()).append(SEPARATOR)
+      .append(order instanceof Order ? ((Order) order).getTime() : LocalDateTime.now()).append(SEPARATOR)
+      .append(order.getStatus());
+
+    for(Map.Entry<MenuItem, Integer> item : order.getItems().entrySet()) {
+      record.append(SEPARATOR).append(escape(item.getKey().getName()))
+        .append(SEPARATOR).append(item.getKey().getPrice())
+        .append(SEPARATOR).append(item.getValue());
+    }
+
+    append(record);
+  }
+
+  // 記錄訂單狀態變更
+  public void appendStatus(AbstractOrder order) {
+    StringBuilder record = new StringBuilder();
+    record.append(RecordType.STATUS).append(SEPARATOR)
+      .append(order.getId()).append(SEPARATOR)
+      .append(order.getStatus());
+
+    append(record);
+  }
+
+  private void append(StringBuilder record) {
+    lock.lock();
+    try {
+      if(closed) {
+        return;
+      }
+
+      this.pending.append(record).append('\n');
+      this.pendingRecords++;
+      this.appendedSequence++;
+
+      // 第一筆紀錄喚醒提交執行緒開始收集，累積足夠的筆數就提早提交
+      if(this.pendingRecords == 1 || this.pendingRecords >= COMMIT_BATCH_SIZE) {
+        this.commitRequested.signal();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // 等待目前為止的所有紀錄都寫入磁碟；寫入失敗過或提交執行緒已停止時丟出 IOException
+  public void sync() throws IOException, InterruptedException {
+    lock.lock();
+    try {
+      long target = this.appendedSequence;
+      this.commitRequested.signal();
+
+      while(this.committedSequence < target) {
+        // 失敗的批次已經從緩衝區取出，其中的紀錄不會再寫入，不能回報為已同步
+        if(this.commitFailure != null) {
+          throw new IOException("日誌寫入失敗", this.commitFailure);
+        }
+
+        if(!this.committer.isAlive()) {
+          throw new IOException("日誌提交執行緒已停止");
+        }
+
+        this.committed.await(COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+      }
+
+      if(this.commitFailure != null) {
+        throw new IOException("日誌寫入失敗", this.commitFailure);
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // 輪替日誌區段，回傳已封存（不再寫入）的舊區段
+  public List<File> rotate() throws IOException {
+    synchronized(channelLock) {
+      commitPending();
+      this.channel.close();
+      openSegment();
+    }
+
+    List<File> sealedSegments = new ArrayList<>();
+    for(File segment : listSegments(this.directory)) {
+      if(!segment.equals(this.activeSegment)) {
+        sealedSegments.add(segment);
+      }
+    }
+
+    return sealedSegments;
+  }
+
+  // 取得目前的日誌區段
+  public File getActiveSegment() {
+    return this.activeSegment;
+  }
+
+  @Override
+  public void close() throws IOException {
+    lock.lock();
+    try {
+      this.closed = true;
+      this.commitRequested.signal();
+    } finally {
+      lock.unlock();
+    }
+
+    try {
+      this.committer.join();
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+
+    synchronized(channelLock) {
+      commitPending();
+      this.channel.close();
+    }
+
+    // 沒有任何紀錄的區段不需要留下，下次啟動就不必重播
+    if(this.activeSegment.length() == 0) {
+      this.activeSegment.delete();
+    }
+  }
+
+  private void openSegment() throws IOException {
+    // 同一毫秒內輪替時檔名必須嚴格遞增，否則會重新開啟剛封存的區段
+    long millis = System.currentTimeMillis();
+    if(millis <= this.lastSegmentMillis) {
+      millis = this.lastSegmentMillis + 1;
+    }
+    this.lastSegmentMillis = millis;
+
+    LocalDateTime segmentTime = LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneId.systemDefault());
+    String filename = FILE_PREFIX + segmentTime.format(FILE_TIME_FORMAT) + FILE_SUFFIX;
+    this.activeSegment = new File(this.directory, filename);
+    this.channel = FileChannel.open(this.activeSegment.toPath(),
+      StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+  }
+
+  // 群組提交：每隔一段時間或累積足夠筆數，一次寫入並同步所有紀錄
+  private void commitLoop() {
+    while(true) {
+      lock.lock();
+      try {
+        // 閒置時不輪詢，直到有新紀錄才醒來
+        while(!closed && this.pendingRecords == 0) {
+          this.commitRequested.await();
+        }
+
+        if(closed) {
+          return;
+        }
+
+        // 再等一小段時間，讓同一批次收集更多紀錄
+        if(this.pendingRecords < COMMIT_BATCH_SIZE) {
+          this.commitRequested.await(COMMIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        }
+      } catch(InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return;
+      } finally {
+        lock.unlock();
+      }
+
+      synchronized(channelLock) {
+        try {
+          commitPending();
+        } catch(IOException e) {
+          e.printStackTrace();
+        }
+      }
+    }
+  }
+
+  // 呼叫前必須持有 channelLock
+  private void commitPending() throws IOException {
+    StringBuilder batch;
+    long target;
+
+    // 交換緩衝區，寫入磁碟期間其他執行緒仍可繼續加入紀錄
+    lock.lock();
+    try {
+      if(this.pendingRecords == 0) {
+        return;
+      }
+
+      batch = this.pending;
+      target = this.appendedSequence;
+      this.pending = new StringBuilder();
+      this.pendingRecords = 0;
+    } finally {
+      lock.unlock();
+    }
+
+    try {
+      write(ByteBuffer.wrap(batch.toString().getBytes(StandardCharsets.UTF_8)));
+    } catch(IOException e) {
+      // 記錄失敗並喚醒等待同步的執行緒，讓它們丟出例外而不是一直等下去
+      lock.lock();
+      try {
+        if(this.commitFailure == null) {
+          this.commitFailure = e;
+        }
+        this.committed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+      throw e;
+    }
+
+    lock.lock();
+    try {
+      this.committedSequence = target;
+      this.committed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  // 寫入一批紀錄並同步到磁碟，呼叫前必須持有 channelLock
+  void write(ByteBuffer buffer) throws IOException {
+    while(buffer.hasRemaining()) {
+      this.channel.write(buffer);
+    }
+    this.channel.force(false);
+  }
+
+  // 餐點名稱可能包含分隔字元或換行，寫入時跳脫，避免破壞紀錄的格式
+  static String escape(String field) {
+    StringBuilder escaped = null;
+
+    for(int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      String replacement;
+      switch(c) {
+        case '\\':
+          replacement = "\\\\";
+          break;
+        case '\t':
+          replacement = "\\t";
+          break;
+        case '\n':
+          replacement = "\\n";
+          break;
+        case '\r':
+          replacement = "\\r";
+          break;
+        default:
+          replacement = null;
+      }
+
+      if(replacement == null) {
+        if(escaped != null) {
+          escaped.append(c);
+        }
+        continue;
+      }
+
+      // 大部分名稱不需要跳脫，遇到第一個特殊字元才建立新的字串
+      if(escaped == null) {
+        escaped = new StringBuilder(field.length() + 8).append(field, 0, i);
+      }
+      escaped.append(replacement);
+    }
+
+    return escaped == null ? field : escaped.toString();
+  }
+
+  // escape 的反向，不認得的跳脫序列原樣保留
+  static String unescape(String field) {
+    if(field.indexOf('\\') < 0) {
+      return field;
+    }
+
+    StringBuilder unescaped = new StringBuilder(field.length());
+    for(int i = 0; i < field.length(); i++) {
+      char c = field.charAt(i);
+      if(c != '\\' || i + 1 == field.length()) {
+        unescaped.append(c);
+        continue;
+      }
+
+      char next = field.charAt(i + 1);
+      switch(next) {
+        case '\\':
+          unescaped.append('\\');
+          i++;
+          break;
+        case 't':
+          unescaped.append('\t');
+          i++;
+          break;
+        case 'n':
+          unescaped.append('\n');
+          i++;
+          break;
+        case 'r':
+          unescaped.append('\r');
+          i++;
+          break;
+        default:
+          unescaped.append(c);
+      }
+    }
+
+    return unescaped.toString();
+  }
+
+  // 列出資料夾中所有的日誌區段（由舊到新）
+  public static File[] listSegments(File directory) {
+    File[] segments = directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+
+    if(segments == null) {
+      return new File[0];
+    }
+
+    Arrays.sort(segments, (file1, file2) -> file1.getName().compareTo(file2.getName()));
+    return segments;
+  }
+
+  // 將日誌區段重播到訂單表上，回傳成功套用的紀錄數
+  public static int replay(File segment, Map<Long, Order> orders) throws IOException {
+    int applied = 0;
+
+    try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(segment), StandardCharsets.UTF_8))) {
+      String line;
+
+      while((line = reader.readLine()) != null) {
+        try {
+          String[] fields = line.split(SEPARATOR);
+          long id = Long.parseLong(fields[1]);
+          Order order = apply(fields, orders.get(id));
+
+          if(order != null) {
+            orders.put(id, order);
+          }
+          applied++;
+        } catch(RuntimeException e) {
+          // 當機時最後一行可能只寫了一半，略過無法解析的紀錄
+          System.err.println("略過無法解析的日誌紀錄：" + line);
+        }
+      }
+    }
+
+    return applied;
+  }
+
+  // 只重播一筆訂單的紀錄：其他編號的紀錄只比對編號欄位就略過，不拆欄位也不建立訂單
+  // current 是快照中的版本（沒有時為 null），回傳套用後的訂單
+  public static Order replay(File segment, long id, Order current) throws IOException {
+    Order order = current;
+
+    try(BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(segment), StandardCharsets.UTF_8))) {
+      String line;
+
+      while((line = reader.readLine()) != null) {
+        if(!hasId(line, id)) {
+          continue;
+        }
+
+        try {
+          order = apply(line.split(SEPARATOR), order);
+        } catch(RuntimeException e) {
+          System.err.println("略過無法解析的日誌紀錄：" + line);
+        }
+      }
+    }
+
+    return order;
+  }
+
+  // 比對紀錄的第二個欄位（編號），不配置新的字串
+  private static boolean hasId(String line, long id) {
+    int start = line.indexOf(SEPARATOR) + 1;
+    if(start == 0) {
+      return false;
+    }
+
+    int end = line.indexOf(SEPARATOR, start);
+    if(end < 0) {
+      end = line.length();
+    }
+
+    if(end == start || end - start > 19) {
+      return false;
+    }
+
+    long value = 0;
+    for(int i = start; i < end; i++) {
+      char c = line.charAt(i);
+      if(c < '0' || c > '9') {
+        return false;
+      }
+      value = value * 10 + (c - '0');
+    }
+
+    return value == id;
+  }
+
+  // 套用一筆紀錄，current 是目前的訂單（沒有時為 null），回傳套用後的訂單
+  private static Order apply(String[] fields, Order current) {
+    RecordType type = RecordType.valueOf(fields[0]);
+    long id = Long.parseLong(fields[1]);
+
+    if(type == RecordType.CREATE) {
+      // 快照中已經有的訂單狀態較新，不覆蓋
+      if(current != null) {
+        return current;
+      }
+
+      Order order = new Order(id);
+      order.setTime(LocalDateTime.parse(fields[2]));
+      order.restoreStatus(OrderStatus.valueOf(fields[3]));
+      for(int i = 4; i + 2 < fields.length; i += 3) {
+        MenuItem menuItem = MenuCatalog.intern(unescape(fields[i]), Double.parseDouble(fields[i + 1]));
+        order.addItem(menuItem, Integer.parseInt(fields[i + 2]));
+      }
+
+      return order;
+    }
+
+    if(current != null) {
+      current.restoreStatus(OrderStatus.valueOf(fields[2]));
+    }
+    return current;
+  }
+}
+
+/*
+用途：訂單的預寫日誌（write-ahead journal），每次新增或狀態變更只追加一筆小紀錄。
+群組提交：多筆紀錄累積後一次 fsync，降低磁碟同步的次數。
+快照只在壓縮時寫入，持久化的成本與變更量成正比，而不是整本訂單簿的大小。
+ */
@@ -0,0 +1,124 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.Order;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+public class OrderRecovery {
+  // 訂單與它所在快照的順序，合併時以較新的快照為準
+  private static class VersionedOrder {
+    private final int snapshotIndex;
+    private final Order order;
+
+    VersionedOrder(int snapshotIndex, Order order) {
+      this.snapshotIndex = snapshotIndex;
+      this.order = order;
+    }
+  }
+
+  private final File directory; // 訂單資料夾
+
+  public OrderRecovery(File directory) {
+    this.directory = directory;
+  }
+
+  // 平行串流所有快照並直接合併，再重播日誌
+  public RecoveryReport recover() throws IOException {
+    long start = System.nanoTime();
+
+    File[] snapshots = OrderFileManager.listSnapshots(this.directory);
+
+    // 同一個訂單編號以較新快照中的紀錄為準
+    Map<Long, VersionedOrder> merged = new ConcurrentHashMap<>();
+    long recordsRead = mergeInParallel(snapshots, merged);
+
+    // 依建立時間排回原本的順序
+    List<Order> recovered = new ArrayList<>();
+    for(VersionedOrder versioned : merged.values()) {
+      recovered.add(versioned.order);
+    }
+    recovered.sort(Comparator.comparing(Order::getTime, Comparator.nullsFirst(Comparator.naturalOrder()))
+      .thenComparingLong(Order::getId));
+
+    Map<Long, Order> orderById = new LinkedHashMap<>();
+    for(Order order : recovered) {
+      orderById.put(order.getId(), order);
+    }
+
+    // 日誌區段記錄最新快照之後的變更，必須依序重播
+    File[] segments = OrderJournal.listSegments(this.directory);
+    for(File segment : segments) {
+      recordsRead += OrderJournal.replay(segment, orderById);
+    }
+
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    return new RecoveryReport(new ArrayList<>(orderById.values()), snapshots.length, segments.length, recordsRead, elapsedMillis);
+  }
+
+  private long mergeInParallel(File[] snapshots, Map<Long, VersionedOrder> merged) throws IOException {
+    if(snapshots.length == 0) {
+      return 0;
+    }
+
+    int threads = Math.min(snapshots.length, Runtime.getRuntime().availableProcessors());
+    ExecutorService executor = Executors.newFixedThreadPool(threads);
+    long recordsRead = 0;
+
+    try {
+      List<Future<Long>> futures = new ArrayList<>();
+      for(int i = 0; i < snapshots.length; i++) {
+        int snapshotIndex = i;
+        futures.add(executor.submit(() -> mergeSnapshot(snapshots[snapshotIndex], snapshotIndex, merged)));
+      }
+
+      for(Future<Long> future : futures) {
+        recordsRead += future.get();
+      }
+    } catch(InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new IOException("還原訂單時被中斷", e);
+    } catch(ExecutionException e) {
+      throw new IOException("讀取快照失敗", e.getCause());
+    } finally {
+      executor.shutdownNow();
+    }
+
+    return recordsRead;
+  }
+
+  // 邊解碼邊合併，不需要先把整個快照讀成 List
+  private long mergeSnapshot(File snapshot, int snapshotIndex, Map<Long, VersionedOrder> merged) throws IOException {
+    long recordsRead = 0;
+
+    try(OrderCursor cursor = OrderFileManager.openSnapshotCursor(snapshot, OrderFilter.all())) {
+      while(cursor.hasNext()) {
+        VersionedOrder candidate = new VersionedOrder(snapshotIndex, cursor.next());
+        merged.merge(candidate.order.getId(), candidate,
+          (current, update) -> update.snapshotIndex >= current.snapshotIndex ? update : current);
+        recordsRead++;
+      }
+    } catch(UncheckedIOException e) {
+      throw e.getCause();
+    }
+
+    return recordsRead;
+  }
+}
+
+/*
+用途：啟動時從所有快照與日誌區段重建訂單簿。
+快照平行串流解碼，直接合併到以訂單編號為鍵的表中，較新快照的狀態覆蓋較舊的狀態。
+日誌區段依序重播在合併結果之上。
+ */
@@ -0,0 +1,61 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.Order;
+import java.time.ZoneId;
+import java.util.Comparator;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.PriorityBlockingQueue;
+
+// 訂單排程策略：決定廚房人員從訂單佇列取單的順序
+public enum OrderScheduler {
+  // 先到先做
+  FIFO {
+    @Override
+    public BlockingQueue<AbstractOrder> newQueue() {
+      return new LinkedBlockingQueue<>();
+    }
+  },
+
+  // 依「最晚開始製作時間」排序，最急的訂單先做
+  DEADLINE {
+    @Override
+    public BlockingQueue<AbstractOrder> newQueue() {
+      return new PriorityBlockingQueue<>(INITIAL_CAPACITY, DEADLINE_ORDER);
+    }
+  };
+
+  private static final int INITIAL_CAPACITY = 64;
+  private static final long PREP_MILLIS_PER_ITEM = 60_000; // 每份餐點預估的製作時間
+  private static final long MAX_PREP_MILLIS = 10 * 60_000; // 製作時間估計的上限
+  private static final long VIP_BOOST_MILLIS = 5 * 60_000; // VIP 最多提前的時間
+
+  // 最晚開始時間相同時依訂單編號（也就是下單順序）
+  private static final Comparator<AbstractOrder> DEADLINE_ORDER =
+    Comparator.comparingLong(OrderScheduler::latestStartMillis).thenComparingLong(AbstractOrder::getId);
+
+  // 建立這個策略使用的訂單佇列
+  public abstract BlockingQueue<AbstractOrder> newQueue();
+
+  // 最晚開始製作時間 = 承諾完成時間 - 預估製作時間 - VIP 提前量
+  // 兩個調整量都有上限，所以等得夠久的訂單一定會排到新訂單前面，不會餓死
+  public static long latestStartMillis(AbstractOrder order) {
+    if(!(order instanceof Order)) {
+      return Long.MAX_VALUE;
+    }
+
+    Order concreteOrder = (Order) order;
+    long promised = concreteOrder.getPromisedReadyTime().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    long prep = Math.min(MAX_PREP_MILLIS, concreteOrder.getItemCount() * PREP_MILLIS_PER_ITEM);
+    long boost = concreteOrder.isVip() ? VIP_BOOST_MILLIS : 0;
+
+    return promised - prep - boost;
+  }
+}
+
+/*
+用途：可抽換的排程策略，App 啟動時依 -Dordersystem.scheduler 選擇訂單佇列。
+DEADLINE 以承諾完成時間、訂單大小與 VIP 計算最晚開始時間，用 PriorityBlockingQueue 排序。
+截止時間是固定的絕對時間，舊訂單會自然變得越來越急，等於內建了老化機制。
+ */
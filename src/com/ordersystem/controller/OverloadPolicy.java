@@ -0,0 +1,63 @@
+package com.ordersystem.controller;
+
+public class OverloadPolicy {
+  // 訂單佇列已滿時的處理方式
+  enum Action {
+    BLOCK, // 等待空位，逾時就拒絕
+    REJECT, // 立即拒絕
+    SHED_LOWEST // 取消佇列中優先順序最低的訂單，讓新訂單進來
+  }
+
+  private final Action action;
+  private final long timeoutMillis; // BLOCK 的最長等待時間
+
+  private OverloadPolicy(Action action, long timeoutMillis) {
+    this.action = action;
+    this.timeoutMillis = timeoutMillis;
+  }
+
+  // 等待空位，最多等 timeoutMillis
+  public static OverloadPolicy block(long timeoutMillis) {
+    return new OverloadPolicy(Action.BLOCK, timeoutMillis);
+  }
+
+  // 佇列已滿就立即拒絕
+  public static OverloadPolicy reject() {
+    return new OverloadPolicy(Action.REJECT, 0);
+  }
+
+  // 佇列已滿時取消最不急的等待中訂單；新訂單本身最不急時拒絕新訂單
+  public static OverloadPolicy shedLowest() {
+    return new OverloadPolicy(Action.SHED_LOWEST, 0);
+  }
+
+  // 依名稱建立（BLOCK、REJECT、SHED_LOWEST），例如從系統屬性讀取
+  public static OverloadPolicy fromName(String name, long blockTimeoutMillis) {
+    switch(Action.valueOf(name)) {
+      case BLOCK:
+        return block(blockTimeoutMillis);
+      case SHED_LOWEST:
+        return shedLowest();
+      default:
+        return reject();
+    }
+  }
+
+  Action getAction() {
+    return this.action;
+  }
+
+  public long getTimeoutMillis() {
+    return this.timeoutMillis;
+  }
+
+  @Override
+  public String toString() {
+    return this.action == Action.BLOCK ? this.action + "(" + this.timeoutMillis + " ms)" : this.action.toString();
+  }
+}
+
+/*
+用途：訂單佇列滿載時的准入規則，由 Producer 在送出訂單時套用。
+超過容量的訂單不會無限制地堆積，等待時間與記憶體用量都有上限。
+ */
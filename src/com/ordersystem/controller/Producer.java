@@ -2,28 +2,334 @@ package com.ordersystem.controller;
 
 import com.ordersystem.model.AbstractOrder;
 import com.ordersystem.model.AbstractProducer;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import com.ordersystem.model.OrderStore;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 public class Producer extends AbstractProducer {
+  private static final int PURGE_THRESHOLD = 64; // 佇列中的已取消訂單超過這個數量，且比有效訂單多時才清除
+
   private BlockingQueue<AbstractOrder> queue; // 訂單佇列
+  private volatile OrderStore store; // 訂單儲存，尚未設定時為 null
+  private final OrderEventBus eventBus = new OrderEventBus(); // 訂單生命週期事件
+
+  // 准入控制：佇列中的訂單數不超過 capacity
+  private final int capacity;
+  private final Semaphore intake; // 佇列剩餘的空位，廚房人員取出訂單時歸還
+  private final AtomicInteger overdraft = new AtomicInteger(0); // 還原訂單超出容量的數量，取出時先抵銷
+  private final Set<Long> permitHolders = ConcurrentHashMap.newKeySet(); // 佔用空位的訂單，取出或取消時只會歸還一次
+  private final AtomicInteger unpurgedTombstones = new AtomicInteger(0); // 上次清除之後取消的佇列訂單數（有些可能已被取出）
+  private final AtomicBoolean purging = new AtomicBoolean(false);
+  private volatile OverloadPolicy overloadPolicy;
+
+  // 准入統計
+  private final LongAdder acceptedCount = new LongAdder();
+  private final LongAdder shedCount = new LongAdder();
+  private final LongAdder tombstoneCount = new LongAdder(); // 在佇列中被取消的訂單數
+  private final LongAdder purgedCount = new LongAdder(); // 從佇列清除的已取消訂單數
+  private final LongAdder[] rejectedCounts = new LongAdder[AdmissionResult.values().length];
 
   public Producer(BlockingQueue<AbstractOrder> queue) {
+    this(queue, Integer.MAX_VALUE, OverloadPolicy.reject());
+  }
+
+  public Producer(BlockingQueue<AbstractOrder> queue, int capacity, OverloadPolicy overloadPolicy) {
     super(); // 呼叫父類別的建構子
     this.queue = queue; // 初始化佇列
+    this.capacity = capacity;
+    this.intake = new Semaphore(capacity);
+    this.overloadPolicy = overloadPolicy;
+
+    // 訂單簿的狀態變更轉換為事件發布
+    this.orders.addStatusListener(this.eventBus);
+
+    // 佇列中的訂單被取消或過期時立即歸還空位，訂單留在佇列中當作墓碑，取出時略過
+    this.eventBus.subscribe(EnumSet.of(OrderEvent.Type.CANCELLED, OrderEvent.Type.EXPIRED), this::onOrdersCancelled);
+
+    for(int i = 0; i < this.rejectedCounts.length; i++) {
+      this.rejectedCounts[i] = new LongAdder();
+    }
   }
 
   @Override
-  public void addOrder(AbstractOrder order) {
-    super.addOrder(order); // 呼叫父類別方法，將訂單加入列表
-    queue.offer(order);
+  public boolean addOrder(AbstractOrder order) {
+    return submit(order).isAccepted();
+  }
+
+  // 送出訂單：先通過准入控制，再加入訂單簿與訂單佇列
+  public AdmissionResult submit(AbstractOrder order) {
+    // 先檢查一次只是為了不替明顯重複的訂單佔用空位，真正的判斷是加入訂單簿
+    AdmissionResult result = this.orders.contains(order.getId()) ? AdmissionResult.REJECTED_DUPLICATE : admit(order);
+    if(!result.isAccepted()) {
+      this.rejectedCounts[result.ordinal()].increment();
+      return result;
+    }
+
+    // 同一個編號同時送出時只有一筆能加入訂單簿，其餘的歸還剛取得的空位
+    if(!super.addOrder(order)) {
+      releasePermit();
+      this.rejectedCounts[AdmissionResult.REJECTED_DUPLICATE.ordinal()].increment();
+      return AdmissionResult.REJECTED_DUPLICATE;
+    }
+
+    // 先記錄新增再放進佇列：廚房人員取出後的狀態變更紀錄一定排在新增紀錄之後，重播時才不會被略過
+    recordCreated(order);
+
+    this.permitHolders.add(order.getId());
+    // 加入訂單簿之後、記錄空位之前就被取消時，取消的通知不會歸還空位，由這裡歸還
+    if(order.getStatus().isFinal()) {
+      releaseIntake(order);
+    }
+
+    if(!this.queue.offer(order)) {
+      // 佇列本身的容量比准入上限小，這筆訂單視為取消，取消時歸還空位
+      if(order.transitionTo(OrderStatus.CANCELLED)) {
+        recordStatus(order);
+      }
+      this.rejectedCounts[AdmissionResult.REJECTED_QUEUE_FULL.ordinal()].increment();
+      return AdmissionResult.REJECTED_QUEUE_FULL;
+    }
+
+    this.acceptedCount.increment();
+    return result;
+  }
+
+  // 加入還原的訂單，不經過准入控制，超出容量的部分之後取出時抵銷
+  public void restoreOrder(AbstractOrder order) {
+    super.addOrder(order);
+    recordCreated(order);
+    enqueueRestored(order);
+  }
+
+  void enqueueRestored(AbstractOrder order) {
+    if(!this.intake.tryAcquire()) {
+      this.overdraft.incrementAndGet();
+    }
+    this.permitHolders.add(order.getId());
+
+    this.queue.offer(order);
+  }
+
+  private AdmissionResult admit(AbstractOrder order) {
+    if(this.intake.tryAcquire()) {
+      return AdmissionResult.ACCEPTED;
+    }
+
+    OverloadPolicy policy = this.overloadPolicy;
+    switch(policy.getAction()) {
+      case BLOCK:
+        try {
+          return this.intake.tryAcquire(policy.getTimeoutMillis(), TimeUnit.MILLISECONDS) ? AdmissionResult.ACCEPTED : AdmissionResult.REJECTED_TIMEOUT;
+        } catch(InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return AdmissionResult.REJECTED_TIMEOUT;
+        }
+      case SHED_LOWEST:
+        return shedFor(order);
+      default:
+        return AdmissionResult.REJECTED_QUEUE_FULL;
+    }
+  }
+
+  // 取消一筆比新訂單更不急的訂單，它的空位讓給新訂單；只在佇列已滿時掃描佇列
+  private AdmissionResult shedFor(AbstractOrder order) {
+    boolean shed = false;
+
+    while(true) {
+      if(this.intake.tryAcquire()) {
+        return shed ? AdmissionResult.ACCEPTED_AFTER_SHEDDING : AdmissionResult.ACCEPTED;
+      }
+
+      // 已取消的訂單已經歸還空位，只考慮等待中的訂單
+      AbstractOrder victim = null;
+      long latestStart = OrderScheduler.latestStartMillis(order);
+
+      for(AbstractOrder queued : this.queue) {
+        long queuedLatestStart = OrderScheduler.latestStartMillis(queued);
+        if(queued.getStatus() == OrderStatus.WAITING && queuedLatestStart > latestStart) {
+          victim = queued;
+          latestStart = queuedLatestStart;
+        }
+      }
+
+      if(victim == null) {
+        return AdmissionResult.REJECTED_LOWEST_PRIORITY;
+      }
+
+      // 取消後空位立即歸還，不需要從佇列移除；廚房人員可能剛好取走這筆訂單，失敗就重新檢查
+      if(victim.transition(OrderStatus.WAITING, OrderStatus.CANCELLED)) {
+        recordStatus(victim);
+        this.shedCount.increment();
+        shed = true;
+      }
+    }
+  }
+
+  // 廚房人員從佇列取出訂單或訂單被取消時歸還空位，同一筆訂單只會歸還一次
+  void releaseIntake(AbstractOrder order) {
+    if(this.permitHolders.remove(order.getId())) {
+      releasePermit();
+    }
+  }
+
+  private void releasePermit() {
+    while(true) {
+      int owed = this.overdraft.get();
+      if(owed == 0) {
+        this.intake.release();
+        return;
+      }
+
+      if(this.overdraft.compareAndSet(owed, owed - 1)) {
+        return;
+      }
+    }
+  }
+
+  private void onOrdersCancelled(List<OrderEvent> events) {
+    for(OrderEvent event : events) {
+      if(this.permitHolders.remove(event.getOrder().getId())) {
+        releasePermit();
+        this.tombstoneCount.increment();
+
+        if(this.unpurgedTombstones.incrementAndGet() >= PURGE_THRESHOLD) {
+          purgeTombstones();
+        }
+      }
+    }
+  }
+
+  // 墓碑比有效訂單多時，一次從佇列清除所有已取消的訂單，平均每次取消的成本仍是 O(1)
+  private void purgeTombstones() {
+    if(this.unpurgedTombstones.get() <= getQueuedCount() || !this.purging.compareAndSet(false, true)) {
+      return;
+    }
+
+    try {
+      this.unpurgedTombstones.set(0);
+      this.queue.removeIf(queued -> {
+        if(queued.getStatus() != OrderStatus.CANCELLED) {
+          return false;
+        }
+
+        this.purgedCount.increment();
+        return true;
+      });
+    } finally {
+      this.purging.set(false);
+    }
+  }
+
+  public void setOverloadPolicy(OverloadPolicy overloadPolicy) {
+    this.overloadPolicy = overloadPolicy;
+  }
+
+  public OverloadPolicy getOverloadPolicy() {
+    return this.overloadPolicy;
+  }
+
+  public int getCapacity() {
+    return this.capacity;
+  }
+
+  // 目前佔用的佇列空位
+  public int getQueuedCount() {
+    return this.capacity - this.intake.availablePermits() + this.overdraft.get();
+  }
+
+  public long getAcceptedCount() {
+    return this.acceptedCount.sum();
+  }
+
+  // 為了新訂單而取消的訂單數
+  public long getShedCount() {
+    return this.shedCount.sum();
+  }
+
+  // 某種原因被拒絕的訂單數
+  public long getRejectedCount(AdmissionResult result) {
+    return this.rejectedCounts[result.ordinal()].sum();
+  }
+
+  // 在佇列中被取消或過期、由取消的那一刻歸還空位的訂單數
+  public long getTombstoneCount() {
+    return this.tombstoneCount.sum();
+  }
+
+  public long getPurgedCount() {
+    return this.purgedCount.sum();
+  }
+
+  // 被拒絕的訂單總數
+  public long getRejectedCount() {
+    long sum = 0;
+
+    for(LongAdder count : this.rejectedCounts) {
+      sum += count.sum();
+    }
+
+    return sum;
+  }
+
+  @Override
+  public boolean cancelOrder(long id) {
+    boolean cancelled = super.cancelOrder(id);
+
+    if(cancelled) {
+      recordStatus(this.orders.get(id));
+    }
+
+    return cancelled;
+  }
+
+  // 訂閱訂單的新增、開始製作、完成、取消與過期
+  public OrderEventBus getEventBus() {
+    return this.eventBus;
   }
 
   public BlockingQueue<AbstractOrder> getQueue() {
     return this.queue;
   }
+
+  // 設定訂單儲存，之後的新增與狀態變更都會交給它
+  public void setStore(OrderStore store) {
+    this.store = store;
+  }
+
+  public OrderStore getStore() {
+    return this.store;
+  }
+
+  // 記錄新增訂單
+  void recordCreated(AbstractOrder order) {
+    OrderStore store = this.store;
+    if(store != null) {
+      store.orderCreated(order);
+    }
+  }
+
+  // 記錄訂單狀態變更
+  void recordStatus(AbstractOrder order) {
+    OrderStore store = this.store;
+    if(store != null) {
+      store.statusChanged(order);
+    }
+  }
 }
 
 /*
 負責將訂單「送出」給背景工作者（Consumer）。
-使用 BlockingQueue 保證執行緒安全。
- */
\ No newline at end of file
+使用 BlockingQueue 保證執行緒安全，Semaphore 限制佇列長度，滿載時依 OverloadPolicy 處理。
+取消的訂單不從佇列中間移除，空位立即歸還，訂單本身當作墓碑留到被取出或整批清除。
+新增與取消訂單時會通知 OrderStore，訂單的狀態變更透過 OrderEventBus 發布。
+ */
@@ -0,0 +1,61 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.Order;
+import java.util.List;
+
+public class RecoveryReport {
+  private final List<Order> orders; // 重建後的訂單（依第一次出現的順序）
+  private final int snapshotFiles; // 讀取的快照檔案數
+  private final int journalSegments; // 重播的日誌區段數
+  private final long recordsRead; // 讀取的紀錄總數（含重複）
+  private final long elapsedMillis; // 載入耗時
+
+  public RecoveryReport(List<Order> orders, int snapshotFiles, int journalSegments, long recordsRead, long elapsedMillis) {
+    this.orders = orders;
+    this.snapshotFiles = snapshotFiles;
+    this.journalSegments = journalSegments;
+    this.recordsRead = recordsRead;
+    this.elapsedMillis = elapsedMillis;
+  }
+
+  public List<Order> getOrders() {
+    return this.orders;
+  }
+
+  public int getSnapshotFiles() {
+    return this.snapshotFiles;
+  }
+
+  public int getJournalSegments() {
+    return this.journalSegments;
+  }
+
+  public long getRecordsRead() {
+    return this.recordsRead;
+  }
+
+  // 被較新紀錄覆蓋掉的重複紀錄數
+  public long getDuplicatesMerged() {
+    return Math.max(0, this.recordsRead - this.orders.size());
+  }
+
+  public long getElapsedMillis() {
+    return this.elapsedMillis;
+  }
+
+  @Override
+  public String toString() {
+    return String.format("載入 %d 個快照、%d 個日誌區段，共 %d 筆紀錄，合併後 %d 筆訂單，耗時 %d ms",
+      this.snapshotFiles,
+      this.journalSegments,
+      this.recordsRead,
+      this.orders.size(),
+      this.elapsedMillis
+    );
+  }
+}
+
+/*
+用途：記錄啟動時還原訂單的結果與成本。
+隨著歷史檔案增加，可以用載入時間與紀錄數追蹤啟動成本。
+ */
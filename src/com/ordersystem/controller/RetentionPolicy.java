@@ -0,0 +1,47 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.time.LocalDateTime;
+
+public class RetentionPolicy {
+  private final int retainDays; // 已結束訂單保留的天數，0 表示永久保留
+  private final int minSnapshots; // 至少有幾個快照才值得壓縮
+
+  public RetentionPolicy(int retainDays, int minSnapshots) {
+    this.retainDays = retainDays;
+    this.minSnapshots = minSnapshots;
+  }
+
+  // 只合併快照，不刪除任何訂單
+  public static RetentionPolicy keepAll() {
+    return new RetentionPolicy(0, 2);
+  }
+
+  // 已完成或已取消的訂單只保留最近幾天
+  public static RetentionPolicy retainDays(int days) {
+    return new RetentionPolicy(days, 2);
+  }
+
+  public int getMinSnapshots() {
+    return this.minSnapshots;
+  }
+
+  // 等待中或處理中的訂單一律保留
+  public boolean retains(Order order, LocalDateTime now) {
+    if(this.retainDays <= 0 || order.getTime() == null) {
+      return true;
+    }
+
+    if(order.getStatus() == OrderStatus.WAITING || order.getStatus() == OrderStatus.PROCESSING) {
+      return true;
+    }
+
+    return !order.getTime().isBefore(now.minusDays(this.retainDays));
+  }
+}
+
+/*
+用途：壓縮訂單資料夾時的保留規則。
+決定哪些已結束的歷史訂單可以在合併時丟棄。
+ */
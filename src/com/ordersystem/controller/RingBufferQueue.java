@@ -0,0 +1,391 @@
+package com.ordersystem.controller;
+
+import java.util.AbstractQueue;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/*
+預先配置的環狀緩衝區，多個生產者與多個消費者都不需要上鎖。
+每一格有自己的序號：
+  序號 == 位置         → 這一格是空的，生產者可以寫入
+  序號 == 位置 + 1     → 這一格已經寫入，消費者可以取出
+生產者與消費者各自用 CAS 搶下一個位置，放入或取出訂單不會配置任何節點。
+ */
+public class RingBufferQueue<E> extends AbstractQueue<E> implements BlockingQueue<E> {
+  // 佇列空或滿時的等待方式
+  public enum WaitStrategy {
+    SPIN, // 忙碌等待，延遲最低但會佔用一個 CPU
+    YIELD, // 讓出 CPU 後再檢查
+    PARK // 先短暫自旋，之後停在 Condition 上，閒置時不耗用 CPU
+  }
+
+  private static final Object REMOVED = new Object(); // 已被 remove 的格子，消費者取出時略過
+  private static final int SPIN_TRIES = 100; // PARK 在停下來之前的自旋次數
+
+  private final int capacity;
+  private final int mask;
+  private final AtomicReferenceArray<Object> elements;
+  private final AtomicLongArray sequences;
+  private final AtomicLong head = new AtomicLong(0); // 下一個要取出的位置
+  private final AtomicLong tail = new AtomicLong(0); // 下一個要寫入的位置
+  private final WaitStrategy waitStrategy;
+
+  // 只有 PARK 會用到
+  private final ReentrantLock waitLock = new ReentrantLock();
+  private final Condition notEmpty = waitLock.newCondition();
+  private final Condition notFull = waitLock.newCondition();
+  private final AtomicInteger waitingConsumers = new AtomicInteger(0);
+  private final AtomicInteger waitingProducers = new AtomicInteger(0);
+
+  // 容量會調整為 2 的次方
+  public RingBufferQueue(int capacity, WaitStrategy waitStrategy) {
+    if(capacity <= 0 || capacity > (1 << 30)) {
+      throw new IllegalArgumentException("容量必須介於 1 到 2^30：" + capacity);
+    }
+
+    int rounded = 1;
+    while(rounded < capacity) {
+      rounded <<= 1;
+    }
+
+    this.capacity = rounded;
+    this.mask = this.capacity - 1;
+    this.elements = new AtomicReferenceArray<>(this.capacity);
+    this.sequences = new AtomicLongArray(this.capacity);
+    this.waitStrategy = waitStrategy;
+
+    for(int i = 0; i < this.capacity; i++) {
+      this.sequences.set(i, i);
+    }
+  }
+
+  @Override
+  public boolean offer(E element) {
+    Objects.requireNonNull(element);
+    long position = this.tail.get();
+
+    while(true) {
+      int index = (int) (position & this.mask);
+      long difference = this.sequences.get(index) - position;
+
+      if(difference == 0) {
+        if(this.tail.compareAndSet(position, position + 1)) {
+          this.elements.set(index, element);
+          this.sequences.set(index, position + 1);
+          signal(this.waitingConsumers, this.notEmpty);
+          return true;
+        }
+        position = this.tail.get();
+      } else if(difference < 0) {
+        // 這一格還沒被取出，佇列已滿
+        return false;
+      } else {
+        position = this.tail.get();
+      }
+    }
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E poll() {
+    while(true) {
+      Object element = pollSlot();
+      if(element != REMOVED) {
+        return (E) element;
+      }
+    }
+  }
+
+  // 取出下一格，可能是 REMOVED；佇列空時回傳 null
+  private Object pollSlot() {
+    long position = this.head.get();
+
+    while(true) {
+      int index = (int) (position & this.mask);
+      long difference = this.sequences.get(index) - (position + 1);
+
+      if(difference == 0) {
+        if(this.head.compareAndSet(position, position + 1)) {
+          return release(index, position);
+        }
+        position = this.head.get();
+      } else if(difference < 0) {
+        return null;
+      } else {
+        position = this.head.get();
+      }
+    }
+  }
+
+  // 取走格子中的資料，並把格子交還給下一輪的生產者
+  private Object release(int index, long position) {
+    Object element = this.elements.getAndSet(index, null);
+    this.sequences.set(index, position + this.capacity);
+    signal(this.waitingProducers, this.notFull);
+    return element;
+  }
+
+  // 一次搶下連續多個已寫入的位置，只需要一次 CAS
+  @Override
+  @SuppressWarnings("unchecked")
+  public int drainTo(Collection<? super E> collection, int maxElements) {
+    if(collection == this) {
+      throw new IllegalArgumentException();
+    }
+
+    int drained = 0;
+    while(drained < maxElements) {
+      long position = this.head.get();
+      int available = 0;
+
+      while(available < maxElements - drained && available < this.capacity) {
+        long next = position + available;
+        if(this.sequences.get((int) (next & this.mask)) != next + 1) {
+          break;
+        }
+        available++;
+      }
+
+      if(available == 0) {
+        break;
+      }
+
+      if(!this.head.compareAndSet(position, position + available)) {
+        continue;
+      }
+
+      for(int i = 0; i < available; i++) {
+        long next = position + i;
+        Object element = release((int) (next & this.mask), next);
+        if(element != REMOVED) {
+          collection.add((E) element);
+          drained++;
+        }
+      }
+    }
+
+    return drained;
+  }
+
+  @Override
+  public int drainTo(Collection<? super E> collection) {
+    return drainTo(collection, Integer.MAX_VALUE);
+  }
+
+  @Override
+  public void put(E element) throws InterruptedException {
+    for(int attempt = 0; !offer(element); attempt++) {
+      idle(attempt, this.waitingProducers, this.notFull, false, 0);
+    }
+  }
+
+  @Override
+  public boolean offer(E element, long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+    for(int attempt = 0; !offer(element); attempt++) {
+      long remaining = deadline - System.nanoTime();
+      if(remaining <= 0) {
+        return false;
+      }
+      idle(attempt, this.waitingProducers, this.notFull, false, remaining);
+    }
+
+    return true;
+  }
+
+  @Override
+  public E take() throws InterruptedException {
+    for(int attempt = 0; ; attempt++) {
+      E element = poll();
+      if(element != null) {
+        return element;
+      }
+      idle(attempt, this.waitingConsumers, this.notEmpty, true, 0);
+    }
+  }
+
+  @Override
+  public E poll(long timeout, TimeUnit unit) throws InterruptedException {
+    long deadline = System.nanoTime() + unit.toNanos(timeout);
+
+    for(int attempt = 0; ; attempt++) {
+      E element = poll();
+      if(element != null) {
+        return element;
+      }
+
+      long remaining = deadline - System.nanoTime();
+      if(remaining <= 0) {
+        return null;
+      }
+      idle(attempt, this.waitingConsumers, this.notEmpty, true, remaining);
+    }
+  }
+
+  // 依等待策略等一下；timeoutNanos 為 0 表示沒有期限
+  private void idle(int attempt, AtomicInteger waiting, Condition condition, boolean consumer, long timeoutNanos) throws InterruptedException {
+    if(Thread.interrupted()) {
+      throw new InterruptedException();
+    }
+
+    if(this.waitStrategy == WaitStrategy.SPIN || (this.waitStrategy == WaitStrategy.PARK && attempt < SPIN_TRIES)) {
+      Thread.onSpinWait();
+      return;
+    }
+
+    if(this.waitStrategy == WaitStrategy.YIELD) {
+      Thread.yield();
+      return;
+    }
+
+    waitLock.lock();
+    try {
+      waiting.incrementAndGet();
+
+      // 登記等待之後再檢查一次，避免錯過剛好發生的寫入或取出
+      boolean ready = consumer ? this.tail.get() != this.head.get() : size() < this.capacity;
+      if(!ready) {
+        if(timeoutNanos > 0) {
+          condition.awaitNanos(timeoutNanos);
+        } else {
+          condition.await();
+        }
+      }
+    } finally {
+      waiting.decrementAndGet();
+      waitLock.unlock();
+    }
+  }
+
+  // 只有在有人等待時才需要上鎖通知
+  private void signal(AtomicInteger waiting, Condition condition) {
+    if(waiting.get() > 0) {
+      waitLock.lock();
+      try {
+        condition.signalAll();
+      } finally {
+        waitLock.unlock();
+      }
+    }
+  }
+
+  // 把格子標記為已移除（以 == 比較），消費者取到時會略過；格子要等被取出後才會空出來
+  @Override
+  public boolean remove(Object object) {
+    if(object == null) {
+      return false;
+    }
+
+    for(long position = this.head.get(), end = this.tail.get(); position < end; position++) {
+      if(this.elements.compareAndSet((int) (position & this.mask), object, REMOVED)) {
+        return true;
+      }
+    }
+
+    return false;
+  }
+
+  // 一次走訪把符合條件的格子都標記為已移除，不需要對每個元素重新掃描
+  @Override
+  @SuppressWarnings("unchecked")
+  public boolean removeIf(Predicate<? super E> filter) {
+    boolean removed = false;
+
+    for(long position = this.head.get(), end = this.tail.get(); position < end; position++) {
+      int index = (int) (position & this.mask);
+      Object element = this.elements.get(index);
+      if(element != null && element != REMOVED && filter.test((E) element) && this.elements.compareAndSet(index, element, REMOVED)) {
+        removed = true;
+      }
+    }
+
+    return removed;
+  }
+
+  @Override
+  @SuppressWarnings("unchecked")
+  public E peek() {
+    for(long position = this.head.get(), end = this.tail.get(); position < end; position++) {
+      Object element = this.elements.get((int) (position & this.mask));
+      if(element != null && element != REMOVED) {
+        return (E) element;
+      }
+    }
+
+    return null;
+  }
+
+  // 目前佔用的格子數，包含已移除但還沒被取出的格子
+  @Override
+  public int size() {
+    long size = this.tail.get() - this.head.get();
+    return (int) Math.max(0, Math.min(size, this.capacity));
+  }
+
+  @Override
+  public int remainingCapacity() {
+    return this.capacity - size();
+  }
+
+  public int capacity() {
+    return this.capacity;
+  }
+
+  public WaitStrategy getWaitStrategy() {
+    return this.waitStrategy;
+  }
+
+  // 走訪目前內容的快照
+  @Override
+  @SuppressWarnings("unchecked")
+  public Iterator<E> iterator() {
+    List<E> snapshot = new ArrayList<>();
+
+    for(long position = this.head.get(), end = this.tail.get(); position < end; position++) {
+      Object element = this.elements.get((int) (position & this.mask));
+      if(element != null && element != REMOVED) {
+        snapshot.add((E) element);
+      }
+    }
+
+    Iterator<E> iterator = snapshot.iterator();
+    return new Iterator<E>() {
+      private E last;
+
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public E next() {
+        this.last = iterator.next();
+        return this.last;
+      }
+
+      @Override
+      public void remove() {
+        RingBufferQueue.this.remove(this.last);
+      }
+    };
+  }
+}
+
+/*
+用途：取代 LinkedBlockingQueue 的訂單通道，放入與取出都只靠 CAS，不配置節點。
+drainTo 一次搶下多個位置，配合批次製作減少競爭。
+App 可用 -Dordersystem.queue=RING 切換，test/ 下的 OrderQueueBenchmark 比較兩者的吞吐量。
+ */
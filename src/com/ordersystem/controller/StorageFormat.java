@@ -0,0 +1,33 @@
+package com.ordersystem.controller;
+
+// 訂單快照的儲存格式
+public enum StorageFormat {
+  TEXT(".txt"), // 文字格式，方便人工閱讀
+  BINARY(".seg"); // 二進位區段格式，讀取時使用記憶體映射
+
+  private final String extension;
+
+  StorageFormat(String extension) {
+    this.extension = extension;
+  }
+
+  public String getExtension() {
+    return this.extension;
+  }
+
+  // 依檔名判斷格式，無法判斷時回傳 null
+  public static StorageFormat fromFileName(String name) {
+    for(StorageFormat format : values()) {
+      if(name.endsWith(format.getExtension())) {
+        return format;
+      }
+    }
+
+    return null;
+  }
+}
+
+/*
+用途：選擇 OrderFileManager 使用的儲存後端。
+舊的文字快照仍然可以讀取，新的快照依設定的格式寫入。
+ */
@@ -1,15 +1,15 @@
 package com.ordersystem.model;
 
-import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 
 // 抽象消費者類別
 public abstract class AbstractConsumer {
-  protected List<AbstractOrder> orders; // 訂單列表
+  protected final OrderBook orders; // 訂單簿，通常與生產者共用
 
-  // 建構子
-  public AbstractConsumer() {
-    this.orders = new ArrayList<>();
+  // 建構子：由呼叫端傳入要處理的訂單簿
+  public AbstractConsumer(OrderBook orders) {
+    this.orders = orders;
   }
 
   // 新增訂單
@@ -17,68 +17,41 @@ public abstract class AbstractConsumer {
     this.orders.add(order);
   }
 
-  // 取得所有訂單
-  public List<AbstractOrder> getTotalOrders() {
+  // 取得所有訂單（依加入順序）
+  public Collection<AbstractOrder> getTotalOrders() {
     return this.orders;
   }
 
   // 處理訂單
   public boolean processOrder(long id) {
-    for(AbstractOrder order : this.orders) {
-      // 檢查是否有訂單正在處理中
-      if(order.getStatus() == OrderStatus.PROCESSING) {
-        return false;
-      } else if(order.getId() == id) { // 找到指定訂單並開始處理
-        order.setStatus(OrderStatus.PROCESSING);
-        return true;
-      }
-    }
-
-    return false;
+    // 依編號直接找到指定訂單並開始處理
+    AbstractOrder order = this.orders.get(id);
+    return order != null && order.transition(OrderStatus.WAITING, OrderStatus.PROCESSING);
   }
 
-  // 完成訂單
-  public void completedOrder(AbstractOrder order) {
-    order.setStatus(OrderStatus.COMPLETED);
+  // 完成訂單，訂單已被取消時回傳 false
+  public boolean completedOrder(AbstractOrder order) {
+    return order.transition(OrderStatus.PROCESSING, OrderStatus.COMPLETED);
   }
 
   // 完成訂單的計數
   public int getCountOfCompletedOrders() {
-    int count = 0;
-
-    for(AbstractOrder order : this.orders) {
-      if(order.getStatus() == OrderStatus.COMPLETED) {
-        count++;
-      }
-    }
-
-    return count;
+    return this.orders.countOf(OrderStatus.COMPLETED);
   }
 
   // 取得已完成的訂單列表
   public List<AbstractOrder> getCompletedOrders() {
-    List<AbstractOrder> completedList = new ArrayList<>();
-
-    for(AbstractOrder order : this.orders) {
-      if(order.getStatus() == OrderStatus.COMPLETED) {
-        completedList.add(order);
-      }
-    }
-
-    return completedList;
+    return this.orders.ordersWithStatus(OrderStatus.COMPLETED);
   }
 
   // 計算營收
   public double getRevenue() {
-    double sum = 0;
-
-    for(AbstractOrder order : this.orders) {
-      if(order.getStatus() == OrderStatus.COMPLETED) {
-        sum += order.getTotalPrice();
-      }
-    }
+    return getRevenueCents() / 100.0;
+  }
 
-    return sum;
+  // 營收（分）：已完成訂單的金額由訂單簿同步累計
+  public long getRevenueCents() {
+    return this.orders.amountCentsOf(OrderStatus.COMPLETED);
   }
 }
 
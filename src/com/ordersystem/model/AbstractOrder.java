@@ -1,17 +1,34 @@
 package com.ordersystem.model;
 
-import java.util.HashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceFieldUpdater;
 
 public abstract class AbstractOrder implements InterfaceOrder {
+  private static final int[] NO_ITEMS = new int[0];
+  private static final AtomicReferenceFieldUpdater<AbstractOrder, OrderStatus> STATUS =
+    AtomicReferenceFieldUpdater.newUpdater(AbstractOrder.class, OrderStatus.class, "status");
+
   protected final long id; // 訂單編號
-  protected OrderStatus status; // 訂單狀態
-  protected Map<MenuItem, Integer> items; // 訂單項目
+  private volatile OrderStatus status; // 訂單狀態，只能透過 CAS 轉換
+  private final AtomicLongArray statusNanos = new AtomicLongArray(OrderStatus.values().length); // 進入各狀態的時間（System.nanoTime）
+  protected int[] quantities; // 訂單項目：以 MenuCatalog 編號為索引的數量
+  protected int lineCount; // 數量大於 0 的項目數
+  protected long totalCents; // 訂單總金額（分），加入餐點時同步更新
+  protected int itemCount; // 餐點總份數
+  private volatile OrderStatusListener statusListener; // 狀態變更通知，通常是訂單簿
 
   public AbstractOrder(long id) {
     this.id = id; // 設定訂單編號
-    this.items = new HashMap<>(); // 初始化訂單項目Map
+    this.quantities = NO_ITEMS; // 第一次加入餐點時才配置
     this.status = OrderStatus.WAITING; // 設定初始狀態為等待中
+    this.statusNanos.set(OrderStatus.WAITING.ordinal(), System.nanoTime());
   }
 
   @Override
@@ -19,54 +36,211 @@ public abstract class AbstractOrder implements InterfaceOrder {
     return this.id;
   }
 
+  // 唯讀的 Map 檢視，依餐點編號順序列出，不另外複製資料
   @Override
   public Map<MenuItem, Integer> getItems() {
-    return this.items;
+    return new ItemsView();
   }
 
   @Override
   public Map.Entry<MenuItem, Integer> getItem(String name) {
-    // 根據品相名稱來查找訂單項目
-    for(Map.Entry<MenuItem, Integer> item : this.items.entrySet()) {
-      if(item.getKey().getName().equals(name)) {
-        return item;
+    // 先用目錄直接對應編號
+    MenuItem item = MenuCatalog.findByName(name);
+    if(item != null && getQuantity(item) > 0) {
+      return new AbstractMap.SimpleImmutableEntry<>(item, getQuantity(item));
+    }
+
+    // 同名但不同價格的餐點才需要逐一比對
+    for(int i = 0; i < this.quantities.length; i++) {
+      if(this.quantities[i] > 0 && MenuCatalog.get(i).getName().equals(name)) {
+        return new AbstractMap.SimpleImmutableEntry<>(MenuCatalog.get(i), this.quantities[i]);
       }
     }
 
     return null;
   }
 
+  // 取得某個餐點的數量，沒有點的話回傳 0；只查詢目錄，不會把查詢的餐點登錄進去
+  public int getQuantity(MenuItem item) {
+    int catalogId = MenuCatalog.find(item);
+    return catalogId >= 0 && catalogId < this.quantities.length ? this.quantities[catalogId] : 0;
+  }
+
   @Override
   public OrderStatus getStatus() {
     return this.status;
   }
 
+  // 設定狀態：已經是這個狀態時不做事，不合法的轉換會丟出例外
   @Override
   public void setStatus(OrderStatus status) {
-    this.status = status;
+    if(!transitionTo(status) && this.status != status) {
+      throw new IllegalStateException("訂單 " + this.id + " 無法從 " + this.status + " 轉換為 " + status);
+    }
+  }
+
+  // 轉換到新的狀態，只有合法的轉換且搶到 CAS 的執行緒會成功
+  @Override
+  public boolean transitionTo(OrderStatus next) {
+    while(true) {
+      OrderStatus current = this.status;
+      if(!current.canTransitionTo(next)) {
+        return false;
+      }
+
+      if(STATUS.compareAndSet(this, current, next)) {
+        onStatusChanged(current, next);
+        return true;
+      }
+    }
+  }
+
+  // 只在目前狀態是 expected 時轉換，例如取消時不能覆蓋已完成的訂單
+  public boolean transition(OrderStatus expected, OrderStatus next) {
+    return transition(expected, next, null);
+  }
+
+  // 同上，搶到 CAS 之後、通知之前先執行 beforeNotify，例如記錄轉換的原因；沒搶到的執行緒不會執行
+  protected boolean transition(OrderStatus expected, OrderStatus next, Runnable beforeNotify) {
+    if(!expected.canTransitionTo(next) || !STATUS.compareAndSet(this, expected, next)) {
+      return false;
+    }
+
+    if(beforeNotify != null) {
+      beforeNotify.run();
+    }
+    onStatusChanged(expected, next);
+    return true;
+  }
+
+  // 從儲存還原狀態，不檢查轉換規則，只給載入訂單時使用
+  public void restoreStatus(OrderStatus status) {
+    OrderStatus previous = STATUS.getAndSet(this, status);
+    if(previous != status) {
+      onStatusChanged(previous, status);
+    }
+  }
+
+  // 進入某個狀態的時間（System.nanoTime），尚未進入時回傳 0
+  public long getStatusNanos(OrderStatus status) {
+    return this.statusNanos.get(status.ordinal());
+  }
+
+  private void onStatusChanged(OrderStatus previous, OrderStatus current) {
+    this.statusNanos.set(current.ordinal(), System.nanoTime());
+
+    OrderStatusListener listener = this.statusListener;
+    if(listener != null) {
+      listener.statusChanged(this, previous, current);
+    }
+  }
+
+  // 設定狀態變更通知
+  public void setStatusListener(OrderStatusListener statusListener) {
+    this.statusListener = statusListener;
   }
 
   @Override
   public void addItem(MenuItem item, int quantity) {
-    // 如果餐點項目已經存在，則數量相加；如果不存在的話，創建新的餐點項目
-    this.items.put(item, this.items.getOrDefault(item, 0) + quantity);
+    MenuItem catalogItem = MenuCatalog.intern(item);
+    int catalogId = catalogItem.getCatalogId();
+
+    // 菜單有新的餐點時才擴充陣列
+    if(catalogId >= this.quantities.length) {
+      this.quantities = Arrays.copyOf(this.quantities, Math.max(catalogId + 1, MenuCatalog.size()));
+    }
+
+    // 如果餐點項目已經存在，則數量相加；如果不存在的話，新增一個項目
+    int previous = this.quantities[catalogId];
+    this.quantities[catalogId] = previous + quantity;
+    this.totalCents += catalogItem.getPriceCents() * quantity;
+    this.itemCount += quantity;
+    if(previous <= 0 && previous + quantity > 0) {
+      this.lineCount++;
+    } else if(previous > 0 && previous + quantity <= 0) {
+      this.lineCount--;
+    }
+  }
+
+  // 餐點總份數，用來估計製作時間
+  public int getItemCount() {
+    return this.itemCount;
   }
 
+  // 顯示用的總金額
   @Override
   public double getTotalPrice() {
-    double sum = 0;
+    return this.totalCents / 100.0;
+  }
 
-    // 計算所有餐點項目的總金額：餐點單價 ＊ 數量
-    for(Map.Entry<MenuItem, Integer> item : this.items.entrySet()) {
-      sum += item.getKey().getPrice() * item.getValue();
+  // 總金額（分）：加入餐點時已經累加好，不需要重新計算
+  @Override
+  public long getTotalCents() {
+    return this.totalCents;
+  }
+
+  // 把數量陣列包裝成 Map，讓既有的呼叫端不需要修改
+  private class ItemsView extends AbstractMap<MenuItem, Integer> {
+    @Override
+    public int size() {
+      return lineCount;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+      return key instanceof MenuItem && getQuantity((MenuItem) key) > 0;
+    }
+
+    @Override
+    public Integer get(Object key) {
+      int quantity = key instanceof MenuItem ? getQuantity((MenuItem) key) : 0;
+      return quantity > 0 ? quantity : null;
     }
 
-    return sum;
+    @Override
+    public Set<Map.Entry<MenuItem, Integer>> entrySet() {
+      return new AbstractSet<Map.Entry<MenuItem, Integer>>() {
+        @Override
+        public int size() {
+          return lineCount;
+        }
+
+        @Override
+        public Iterator<Map.Entry<MenuItem, Integer>> iterator() {
+          return new Iterator<Map.Entry<MenuItem, Integer>>() {
+            private int next = advance(0);
+
+            private int advance(int from) {
+              while(from < quantities.length && quantities[from] <= 0) {
+                from++;
+              }
+              return from;
+            }
+
+            @Override
+            public boolean hasNext() {
+              return this.next < quantities.length;
+            }
+
+            @Override
+            public Map.Entry<MenuItem, Integer> next() {
+              if(!hasNext()) {
+                throw new NoSuchElementException();
+              }
+
+              int current = this.next;
+              this.next = advance(current + 1);
+              return new AbstractMap.SimpleImmutableEntry<>(MenuCatalog.get(current), quantities[current]);
+            }
+          };
+        }
+      };
+    }
   }
 }
 
 /*
 用途：訂單的抽象基底，包含通用邏輯如：加入餐點、設定狀態。
-與 InterfaceOrder 的關係：實作其方法並預留擴充彈性。
-抽象類別設計好處：避免重複程式碼，提升可維護性。
- */
\ No newline at end of file
+訂單項目用 int 陣列依餐點編號記錄數量，不需要 HashMap 與 Integer 包裝。
+與 InterfaceOrder 的關係：實作其方法並預留擴充彈性，getItems 仍提供 Map 檢視。
+ */
@@ -1,67 +1,61 @@
 package com.ordersystem.model;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Collection;
 
 // 抽象生產者類別
 public abstract class AbstractProducer {
-  protected final List<AbstractOrder> orders;
+  protected final OrderBook orders; // 以編號為索引的訂單簿
 
   // 建構子
   public AbstractProducer() {
-    this.orders = new ArrayList<>();
+    this.orders = new OrderBook();
   }
 
-  // 新增訂單
-  public void addOrder(AbstractOrder order) {
-    this.orders.add(order);
+  // 新增訂單，回傳是否被接受
+  public boolean addOrder(AbstractOrder order) {
+    return this.orders.add(order);
   }
 
-  // 取得所有訂單
-  public List<AbstractOrder> getTotalOrders() {
+  // 取得所有訂單（依加入順序）
+  public Collection<AbstractOrder> getTotalOrders() {
+    return this.orders;
+  }
+
+  // 取得訂單簿，讓消費者共用
+  public OrderBook getOrderBook() {
     return this.orders;
   }
 
   // 訂單取消功能
   public boolean cancelOrder(long id) {
-    for(AbstractOrder abstractOrder : this.orders) {
-      // 找到指定訂單
-      if(abstractOrder.getId() == id) {
-        // 轉型為具體訂單
-        Order order = (Order) abstractOrder;
-        // 取消訂單
-        order.cancel();
-        // 取消成功
-        return true;
-      }
-    }
+    // 依編號直接找到指定訂單
+    AbstractOrder abstractOrder = this.orders.get(id);
 
     // 找不到訂單
-    return false;
+    if(abstractOrder == null) {
+      return false;
+    }
+
+    // 不需要轉型，已完成的訂單不會被覆蓋；訂單留在佇列中，由監聽取消事件的一方歸還空位
+    return abstractOrder.transitionTo(OrderStatus.CANCELLED);
   }
 
   // 計算特定訂單總價
   public double getOrderTotalPrice(long id) {
-    for(AbstractOrder order : this.orders) {
-      if(order.getId() == id) {
-        // 回傳指定訂單的總價
-        return order.getTotalPrice();
-      }
-    }
+    AbstractOrder order = this.orders.get(id);
 
     // 找不到訂單時回傳0
-    return 0;
+    return order == null ? 0 : order.getTotalPrice();
   }
 
   // 計算所有訂單總價
   public double getTotalPrice() {
-    double sum = 0;
-
-    for(AbstractOrder order : this.orders) {
-      sum += order.getTotalPrice();
-    }
+    return getTotalCents() / 100.0;
+  }
 
-    return sum;
+  // 所有訂單總價（分），由訂單簿依狀態累計，以整數相加不會有誤差
+  public long getTotalCents() {
+    return this.orders.totalCents();
   }
 }
 
@@ -7,9 +7,14 @@ public interface InterfaceOrder {
   Map<MenuItem, Integer> getItems();
   Map.Entry<MenuItem, Integer> getItem(String name);
   OrderStatus getStatus();
+  // 只接受 OrderStatus 允許的轉換，已經是這個狀態時不做事；不合法的轉換丟出 IllegalStateException
+  // 從儲存載入訂單時請改用 AbstractOrder.restoreStatus，並行的呼叫端請用 transitionTo 判斷結果
   void setStatus(OrderStatus status);
+  // 合法的轉換且搶到更新時回傳 true，否則回傳 false，不會丟出例外
+  boolean transitionTo(OrderStatus status);
   void addItem(MenuItem item, int quantity);
   double getTotalPrice();
+  long getTotalCents();
 }
 
 /*
@@ -0,0 +1,90 @@
+package com.ordersystem.model;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// 餐點目錄：同樣名稱與價格的餐點只保留一個共用的 MenuItem，並依登錄順序給予編號
+public class MenuCatalog {
+  private static final Map<String, MenuItem> items = new ConcurrentHashMap<>(); // 名稱與價格 → 共用的餐點
+  private static final Map<String, MenuItem> itemsByName = new ConcurrentHashMap<>(); // 名稱 → 最先登錄的餐點
+  private static volatile MenuItem[] itemsById = new MenuItem[0]; // 編號 → 餐點
+
+  private MenuCatalog() {
+  }
+
+  // 取得共用的餐點，不存在時建立並登錄
+  public static MenuItem intern(String name, double price) {
+    return internCents(name, Math.round(price * 100));
+  }
+
+  // 同上，價格以分為單位
+  public static MenuItem internCents(String name, long priceCents) {
+    MenuItem existing = items.get(key(name, priceCents));
+    return existing != null ? existing : register(MenuItem.ofCents(name, priceCents, ""));
+  }
+
+  // 登錄餐點（例如 UI 的菜單），之後載入相同的餐點都會取得這個物件
+  public static MenuItem intern(MenuItem item) {
+    // 已經有編號的就是目錄中的共用物件
+    if(item.getCatalogId() >= 0) {
+      return item;
+    }
+
+    MenuItem existing = items.get(key(item.getName(), item.getPriceCents()));
+    return existing != null ? existing : register(item);
+  }
+
+  // 只查詢不登錄：回傳餐點的編號，目錄中沒有時回傳 -1
+  public static int find(MenuItem item) {
+    if(item.getCatalogId() >= 0) {
+      return item.getCatalogId();
+    }
+
+    MenuItem existing = items.get(key(item.getName(), item.getPriceCents()));
+    return existing != null ? existing.getCatalogId() : -1;
+  }
+
+  // 依編號取得餐點
+  public static MenuItem get(int catalogId) {
+    return itemsById[catalogId];
+  }
+
+  // 依名稱取得最先登錄的餐點，找不到時回傳 null
+  public static MenuItem findByName(String name) {
+    return itemsByName.get(name);
+  }
+
+  // 目前登錄的餐點數量，也是下一個餐點的編號
+  public static int size() {
+    return itemsById.length;
+  }
+
+  private static synchronized MenuItem register(MenuItem item) {
+    String key = key(item.getName(), item.getPriceCents());
+    MenuItem existing = items.get(key);
+    if(existing != null) {
+      return existing;
+    }
+
+    // 先放進編號表再公開到查詢表，其他執行緒拿到餐點時一定查得到編號
+    MenuItem[] grown = Arrays.copyOf(itemsById, itemsById.length + 1);
+    item.setCatalogId(itemsById.length);
+    grown[itemsById.length] = item;
+    itemsById = grown;
+
+    items.put(key, item);
+    itemsByName.putIfAbsent(item.getName(), item);
+    return item;
+  }
+
+  private static String key(String name, long priceCents) {
+    return name + '\u0000' + priceCents;
+  }
+}
+
+/*
+用途：載入訂單時把相同的餐點對應到同一個 MenuItem，減少重複物件。
+每個餐點有固定的編號，訂單可以用 int 陣列依編號記錄數量。
+載入的餐點和 UI 菜單上的是同一個物件，可以直接比較。
+ */
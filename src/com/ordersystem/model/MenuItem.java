@@ -2,21 +2,65 @@ package com.ordersystem.model;
 
 public class MenuItem {
   private String name; // 餐點名稱
-  private double price; // 餐點價格
+  private final long priceCents; // 餐點價格，以分為單位避免浮點誤差
   private String description; // 餐點描述
+  private int catalogId = -1; // 在 MenuCatalog 中的編號，尚未登錄時為 -1
 
   public MenuItem(String name, double price, String description) {
+    this(name, Math.round(price * 100), description);
+  }
+
+  private MenuItem(String name, long priceCents, String description) {
     this.name = name;
-    this.price = price;
+    this.priceCents = priceCents;
     this.description = description;
   }
 
+  // 以分為單位建立餐點，例如從二進位快照讀回的價格
+  public static MenuItem ofCents(String name, long priceCents, String description) {
+    return new MenuItem(name, priceCents, description);
+  }
+
   public String getName() {
     return this.name;
   }
 
+  // 顯示用的價格，計算金額請使用 getPriceCents
   public double getPrice() {
-    return this.price;
+    return this.priceCents / 100.0;
+  }
+
+  public long getPriceCents() {
+    return this.priceCents;
+  }
+
+  public int getCatalogId() {
+    return this.catalogId;
+  }
+
+  // 只有 MenuCatalog 登錄時會設定
+  void setCatalogId(int catalogId) {
+    this.catalogId = catalogId;
+  }
+
+  // 名稱與價格相同就視為同一個餐點
+  @Override
+  public boolean equals(Object object) {
+    if(this == object) {
+      return true;
+    }
+
+    if(!(object instanceof MenuItem)) {
+      return false;
+    }
+
+    MenuItem other = (MenuItem) object;
+    return this.name.equals(other.name) && this.priceCents == other.priceCents;
+  }
+
+  @Override
+  public int hashCode() {
+    return 31 * this.name.hashCode() + Long.hashCode(this.priceCents);
   }
 
   @Override
@@ -3,16 +3,32 @@ package com.ordersystem.model;
 import java.time.LocalDateTime;
 
 public class Order extends AbstractOrder {
+  private static final long DEFAULT_PROMISE_MINUTES = 15; // 未指定時，承諾在下單後 15 分鐘內完成
+  private static final long EXPIRY_HOURS = 24; // 等待超過 24 小時的訂單視為過期
+
   private LocalDateTime time; // 訂單建立時間
+  private LocalDateTime promisedReadyTime; // 承諾完成時間，null 表示使用預設值
+  private boolean vip; // VIP 訂單會稍微提前製作
+  private volatile boolean cancelledByExpiry; // 是否因為過期而被取消，只在轉換為已取消之後寫入
 
   public Order(long id) {
     super(id); // 呼叫父類別的建構子
     this.time = LocalDateTime.now(); // 記錄當前時間
   }
 
-  // 取消訂單
-  public void cancel() {
-    this.status = OrderStatus.CANCELLED;
+  // 取消訂單，已完成或已取消的訂單不能取消
+  public boolean cancel() {
+    return transitionTo(OrderStatus.CANCELLED);
+  }
+
+  // 因為過期而取消，只有等待中的訂單會過期
+  // 原因只由搶到轉換的這次呼叫在通知之前記錄，同時被使用者取消時不會誤報為過期
+  public boolean expire() {
+    return transition(OrderStatus.WAITING, OrderStatus.CANCELLED, () -> this.cancelledByExpiry = true);
+  }
+
+  public boolean isCancelledByExpiry() {
+    return this.cancelledByExpiry;
   }
 
   // 取得訂單時間
@@ -25,9 +41,33 @@ public class Order extends AbstractOrder {
     this.time = time;
   }
 
+  // 承諾完成時間，未指定時為建立時間加上預設的等待時間
+  public LocalDateTime getPromisedReadyTime() {
+    return this.promisedReadyTime != null ? this.promisedReadyTime : this.time.plusMinutes(DEFAULT_PROMISE_MINUTES);
+  }
+
+  // 設定承諾完成時間，必須在加入訂單佇列之前設定
+  public void setPromisedReadyTime(LocalDateTime promisedReadyTime) {
+    this.promisedReadyTime = promisedReadyTime;
+  }
+
+  public boolean isVip() {
+    return this.vip;
+  }
+
+  // 設定 VIP，必須在加入訂單佇列之前設定
+  public void setVip(boolean vip) {
+    this.vip = vip;
+  }
+
+  // 過期時間：建立時間加上 24 小時
+  public LocalDateTime getExpiryTime() {
+    return this.time.plusHours(EXPIRY_HOURS);
+  }
+
   // 檢查訂單是否過期，超過24小時
   public boolean isExpired() {
-    return LocalDateTime.now().minusHours(24).isAfter(this.time);
+    return LocalDateTime.now().isAfter(getExpiryTime());
   }
 
   // 是否為新的訂單，下訂單後的1小時
@@ -40,9 +80,9 @@ public class Order extends AbstractOrder {
     if(order.getStatus() == OrderStatus.WAITING) {
       // 檢查訂單時間
       if(!order.isExpired()) {
-        order.setStatus(OrderStatus.PROCESSING);
+        order.transitionTo(OrderStatus.PROCESSING);
       } else {
-        order.cancel();
+        order.expire();
       }
     }
   }
@@ -0,0 +1,164 @@
+package com.ordersystem.model;
+
+import java.util.AbstractCollection;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.LongAdder;
+
+// 訂單簿：以訂單編號為索引的共用訂單列表，生產者與消費者共用同一份
+public class OrderBook extends AbstractCollection<AbstractOrder> implements OrderStatusListener {
+  private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+  private final Map<Long, AbstractOrder> index = new ConcurrentHashMap<>(); // 訂單編號 → 訂單
+  private final ConcurrentLinkedQueue<AbstractOrder> insertionOrder = new ConcurrentLinkedQueue<>(); // 依加入順序，給畫面顯示用
+
+  // 依狀態分類的統計，狀態改變時同步更新，讀取不需要掃描
+  private final LongAdder[] counts = new LongAdder[STATUSES.length]; // 各狀態的訂單數
+  private final LongAdder[] amountCents = new LongAdder[STATUSES.length]; // 各狀態的訂單金額（分）
+  private final List<Set<AbstractOrder>> ordersByStatus = new ArrayList<>(); // 各狀態的訂單，保留進入該狀態的順序
+  private final List<OrderStatusListener> listeners = new CopyOnWriteArrayList<>(); // 統計更新後再轉發的對象
+
+  public OrderBook() {
+    for(int i = 0; i < STATUSES.length; i++) {
+      this.counts[i] = new LongAdder();
+      this.amountCents[i] = new LongAdder();
+      this.ordersByStatus.add(Collections.synchronizedSet(new LinkedHashSet<>()));
+    }
+  }
+
+  // 加入訂單，同一個編號只會加入一次
+  // 訂單應該在交給其他執行緒之前加入，之後的狀態變更才會完整反映在統計上
+  @Override
+  public boolean add(AbstractOrder order) {
+    if(this.index.putIfAbsent(order.getId(), order) != null) {
+      return false;
+    }
+
+    this.insertionOrder.offer(order);
+    order.setStatusListener(this);
+    statusChanged(order, null, order.getStatus());
+    return true;
+  }
+
+  @Override
+  public void statusChanged(AbstractOrder order, OrderStatus previous, OrderStatus current) {
+    long cents = order.getTotalCents();
+
+    if(previous != null) {
+      this.counts[previous.ordinal()].decrement();
+      this.amountCents[previous.ordinal()].add(-cents);
+      this.ordersByStatus.get(previous.ordinal()).remove(order);
+    }
+
+    this.counts[current.ordinal()].increment();
+    this.amountCents[current.ordinal()].add(cents);
+
+    // 不同執行緒的通知可能晚到，加入後若訂單已經轉到下一個狀態就移除
+    Set<AbstractOrder> currentOrders = this.ordersByStatus.get(current.ordinal());
+    currentOrders.add(order);
+    if(order.getStatus() != current) {
+      currentOrders.remove(order);
+    }
+
+    for(OrderStatusListener listener : this.listeners) {
+      listener.statusChanged(order, previous, current);
+    }
+  }
+
+  // 訂單簿中所有訂單的狀態變更都會轉發給 listener，在統計更新之後呼叫
+  public void addStatusListener(OrderStatusListener listener) {
+    this.listeners.add(listener);
+  }
+
+  // 依編號取得訂單，找不到時回傳 null
+  public AbstractOrder get(long id) {
+    return this.index.get(id);
+  }
+
+  public boolean contains(long id) {
+    return this.index.containsKey(id);
+  }
+
+  @Override
+  public boolean contains(Object object) {
+    return object instanceof AbstractOrder && this.index.get(((AbstractOrder) object).getId()) == object;
+  }
+
+  @Override
+  public int size() {
+    return this.index.size();
+  }
+
+  // 某個狀態的訂單數
+  public int countOf(OrderStatus status) {
+    return this.counts[status.ordinal()].intValue();
+  }
+
+  // 某個狀態的訂單總金額（分），例如已完成的就是營收
+  public long amountCentsOf(OrderStatus status) {
+    return this.amountCents[status.ordinal()].sum();
+  }
+
+  // 所有訂單的總金額（分）
+  public long totalCents() {
+    long sum = 0;
+
+    for(LongAdder adder : this.amountCents) {
+      sum += adder.sum();
+    }
+
+    return sum;
+  }
+
+  // 最早進入某個狀態的訂單，沒有時回傳 null
+  public AbstractOrder firstWithStatus(OrderStatus status) {
+    Set<AbstractOrder> orders = this.ordersByStatus.get(status.ordinal());
+
+    synchronized(orders) {
+      Iterator<AbstractOrder> iterator = orders.iterator();
+      return iterator.hasNext() ? iterator.next() : null;
+    }
+  }
+
+  // 某個狀態的訂單列表（複製一份，依進入該狀態的順序）
+  public List<AbstractOrder> ordersWithStatus(OrderStatus status) {
+    Set<AbstractOrder> orders = this.ordersByStatus.get(status.ordinal());
+
+    synchronized(orders) {
+      return new ArrayList<>(orders);
+    }
+  }
+
+  // 依加入順序走訪，走訪期間仍可以加入新訂單
+  @Override
+  public Iterator<AbstractOrder> iterator() {
+    Iterator<AbstractOrder> iterator = this.insertionOrder.iterator();
+
+    // 不開放從走訪中移除，避免索引與順序不一致
+    return new Iterator<AbstractOrder>() {
+      @Override
+      public boolean hasNext() {
+        return iterator.hasNext();
+      }
+
+      @Override
+      public AbstractOrder next() {
+        return iterator.next();
+      }
+    };
+  }
+}
+
+/*
+用途：取代原本共用的 ArrayList，查詢、取消、判斷是否存在都是 O(1)。
+訂單狀態改變時會通知訂單簿，各狀態的數量、金額與列表同步更新，畫面讀取不必掃描。
+ConcurrentHashMap 與 LongAdder 都不需要上鎖，UI 執行緒與背景執行緒可以同時讀寫。
+ */
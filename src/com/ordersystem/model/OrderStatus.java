@@ -1,11 +1,28 @@
 package com.ordersystem.model;
 
 public enum OrderStatus {
-  WAITING, PROCESSING, COMPLETED, CANCELLED
+  WAITING, PROCESSING, COMPLETED, CANCELLED;
+
+  // 是否可以從目前狀態轉換到 next：等待 → 處理中 → 完成，完成前都可以取消
+  public boolean canTransitionTo(OrderStatus next) {
+    switch(this) {
+      case WAITING:
+        return next == PROCESSING || next == CANCELLED;
+      case PROCESSING:
+        return next == COMPLETED || next == CANCELLED;
+      default:
+        // 完成與取消都是最終狀態
+        return false;
+    }
+  }
+
+  public boolean isFinal() {
+    return this == COMPLETED || this == CANCELLED;
+  }
 }
 
 /*
-用途：定義訂單的三種狀態。
+用途：定義訂單的四種狀態與合法的狀態轉換。
 使用場景：訂單從建立（NEW）→ 處理中（IN_PROGRESS）→ 完成（COMPLETED）。
 好處：用 enum 取代字串比對，更安全、易於維護。
  */
\ No newline at end of file
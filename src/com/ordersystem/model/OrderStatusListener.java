@@ -0,0 +1,10 @@
+package com.ordersystem.model;
+
+// 訂單狀態變更的通知，previous 為 null 表示訂單剛開始被追蹤
+public interface OrderStatusListener {
+  void statusChanged(AbstractOrder order, OrderStatus previous, OrderStatus current);
+}
+
+/*
+用途：讓訂單簿在狀態改變時同步更新計數與營收，不需要重新掃描所有訂單。
+ */
@@ -0,0 +1,33 @@
+package com.ordersystem.model;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public interface OrderStore {
+  // 載入已儲存的訂單，啟動時呼叫一次
+  List<Order> loadOrders();
+
+  // 記錄新增的訂單
+  void orderCreated(AbstractOrder order);
+
+  // 記錄訂單狀態變更
+  void statusChanged(AbstractOrder order);
+
+  // 以訂單編號查詢，找不到時回傳 null
+  Order findOrder(long id);
+
+  // 查詢建立時間在 [from, to) 之間的訂單，status 為 null 表示不限狀態
+  List<Order> ordersBetween(LocalDateTime from, LocalDateTime to, OrderStatus status);
+
+  // 確保目前為止的變更都已經寫入
+  void flush();
+
+  // 寫入剩下的變更並釋放資源
+  void close();
+}
+
+/*
+用途：訂單儲存引擎的介面，Producer 與 Consumer 只透過它記錄變更。
+可以依部署環境選擇記憶體、日誌或記憶體映射檔案等不同實作。
+也方便在同一個測試程式中比較各實作的吞吐量。
+ */
@@ -1,15 +1,20 @@
 package com.ordersystem.view;
 
 import java.util.ArrayList;
+import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.Collectors;
 
 import javax.imageio.ImageIO;
 import javax.swing.BorderFactory;
 import javax.swing.BoxLayout;
 import javax.swing.ImageIcon;
 import javax.swing.JButton;
+import javax.swing.JCheckBox;
 import javax.swing.JComboBox;
 import javax.swing.JFrame;
 import javax.swing.JLabel;
@@ -42,14 +47,18 @@ import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
 
+import com.ordersystem.controller.AdmissionResult;
 import com.ordersystem.controller.Consumer;
+import com.ordersystem.controller.FileOrderStore;
+import com.ordersystem.controller.OrderEvent;
 import com.ordersystem.controller.OrderFactory;
-import com.ordersystem.controller.OrderFileManager;
 import com.ordersystem.controller.Producer;
-import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.controller.RetentionPolicy;
+import com.ordersystem.model.MenuCatalog;
 import com.ordersystem.model.MenuItem;
 import com.ordersystem.model.Order;
 import com.ordersystem.model.OrderStatus;
+import com.ordersystem.model.OrderStore;
 
 public class OrderSystemUI extends JFrame {
   // 定義UI元件
@@ -73,6 +82,7 @@ public class OrderSystemUI extends JFrame {
   private JButton orderButton; // 送出訂單按鈕
   private JButton processButton; // 處理訂單按鈕
   private JButton addButton; // 加入購物車按鈕
+  private JCheckBox vipCheckBox; // VIP 訂單
 
   // 業務邏輯相關
   private Producer producer; // 訂單生產者
@@ -80,21 +90,27 @@ public class OrderSystemUI extends JFrame {
   private Map<MenuItem, Integer> cartListItems; // 購物車項目
   private final List<MenuItem> menuItems = new ArrayList<>(); // 菜單項目
   private OrderSummaryPanel orderSummaryPanel; // 訂單摘要面板
-  private OrderFileManager orderFileManager; // 訂單檔案管理器
+  private OrderStore orderStore; // 訂單儲存，由啟動程式依部署環境選擇
+  private final ExecutorService submitExecutor = Executors.newSingleThreadExecutor(runnable -> {
+    Thread thread = new Thread(runnable, "order-submitter"); // 依按下的順序送出訂單
+    thread.setDaemon(true);
+    return thread;
+  });
 
   private static final int MAX_IMAGE_SIZE = 100;
 
-  public OrderSystemUI(Producer producer, Consumer consumer) {
+  public OrderSystemUI(Producer producer, Consumer consumer, OrderStore orderStore) {
     this.producer = producer; //初始化
     this.consumer = consumer; //初始化
     this.cartListItems = new HashMap<>();
-    this.orderFileManager = new OrderFileManager();
+    this.orderStore = orderStore;
 
     // 初始化視窗和元件
     initializeFrame();
     createJComponents();
     addListeners(); //事件(點擊、滾動等)處理器
     loadSavedOrders(); // 載入已存儲的訂單
+    startPersistence(); // 開始把變更交給訂單儲存
   }
 
   // 視窗初始化
@@ -109,33 +125,11 @@ public class OrderSystemUI extends JFrame {
       @Override
       public void windowClosing(WindowEvent e) {
         try {
-          // 儲存等待中和已完成的訂單
-          List<Order> ordersToSave = new ArrayList<>();
-
-          // 收集等待中的訂單
-          for(AbstractOrder order : producer.getTotalOrders()) {
-            if(order.getStatus() == OrderStatus.WAITING) {
-              ordersToSave.add((Order) order);
-            }
-          }
-
-          // 收集處理中的訂單
-          AbstractOrder processingOrder = consumer.getProcessingOrder();
-          if(processingOrder != null && processingOrder.getStatus() == OrderStatus.PROCESSING) {
-            processingOrder.setStatus(OrderStatus.PROCESSING);
-            ordersToSave.add((Order) processingOrder);
-          }
-
-          // 收集已完成的訂單
-          for(AbstractOrder order : consumer.getCompletedOrders()) {
-            if(order.getStatus() == OrderStatus.COMPLETED) {
-              ordersToSave.add((Order) order);
-            }
-          }
-
-          // 儲存訂單
-          orderFileManager.saveOrders(ordersToSave);
+          // 先停止廚房人員，製作中的訂單下次啟動時會繼續
+          consumer.stop();
 
+          // 日誌已經記錄所有變更，關閉時只需要寫入最後一次檢查點
+          orderStore.close();
         } catch(Exception ex) {
           System.err.println("Error saving orders: " + ex.getMessage());
         }
@@ -223,7 +217,7 @@ public class OrderSystemUI extends JFrame {
     panel.add(priceLabel);
 
     // 紀錄food加到menuItem
-    this.menuItems.add(new MenuItem(name, price, ""));
+    this.menuItems.add(MenuCatalog.intern(new MenuItem(name, price, "")));
     System.out.println("menu items: " + this.menuItems);
 
     return panel;
@@ -280,7 +274,9 @@ public class OrderSystemUI extends JFrame {
     // 建立送出和處理的按鈕
     orderButton = new JButton("送出訂單");
     processButton = new JButton("處理訂單");
+    vipCheckBox = new JCheckBox("VIP");
 
+    buttonPanel.add(vipCheckBox);
     buttonPanel.add(orderButton);
     buttonPanel.add(processButton);
 
@@ -364,41 +360,36 @@ public class OrderSystemUI extends JFrame {
           }
         }
 
-        if(order != null) {
-          producer.addOrder(order);
-          System.out.println(order.getId());
+        if(order == null) {
+          return;
         }
 
+        // VIP 必須在加入佇列前設定，排程才會生效
+        order.setVip(vipCheckBox.isSelected());
         orderButton.setEnabled(false);
 
-        try {
-          cartListItems = new HashMap<>();
-          cartListPanel.removeAll();
-          forceUpdateUI();
-          Thread.sleep(500);
-        } catch(InterruptedException event) {
-          event.printStackTrace();
-        }
-
-        orderButton.setEnabled(true);
-      }
-    });
+        // BLOCK 策略在佇列已滿時會等待空位，送出不能在 EDT 上執行，否則整個畫面會停住
+        Order submitted = order;
+        submitExecutor.execute(() -> {
+          AdmissionResult result = producer.submit(submitted);
+          System.out.println(submitted.getId() + " " + result);
 
-    // 在新執行緒中監控訂單狀態
-    Thread statusMonitor = new Thread(() -> {
-      try {
-        while(!Thread.currentThread().isInterrupted()) {
           SwingUtilities.invokeLater(() -> {
-            updateStatusPanel();
+            orderButton.setEnabled(true);
+
+            // 訂單太多時不會加入佇列，購物車保留讓使用者稍後再送出
+            if(!result.isAccepted()) {
+              JOptionPane.showMessageDialog(OrderSystemUI.this, result.getReason(), "無法送出訂單", JOptionPane.WARNING_MESSAGE);
+              return;
+            }
+
+            cartListItems = new HashMap<>();
+            cartListPanel.removeAll();
+            forceUpdateUI();
           });
-          Thread.sleep(500);
-        }
-      } catch(InterruptedException e) {
-        Thread.currentThread().interrupt();
+        });
       }
     });
-    statusMonitor.setDaemon(true);
-    statusMonitor.start();
 
     // 處理訂單按鈕監聽器
     processButton.addActionListener(e -> {
@@ -407,7 +398,7 @@ public class OrderSystemUI extends JFrame {
       //   JOptionPane.showMessageDialog(this, "目前沒有待處理的訂單");
       //   return;
       // }
-      boolean hasWaitingOrders = producer.getTotalOrders().stream().anyMatch(order -> order.getStatus() == OrderStatus.WAITING);
+      boolean hasWaitingOrders = consumer.getCountOf(OrderStatus.WAITING) > 0;
 
       if(!hasWaitingOrders) {
         SwingUtilities.invokeLater(() -> {
@@ -416,50 +407,42 @@ public class OrderSystemUI extends JFrame {
         return;
       }
 
-      // 檢查是否有訂單正在處理
-      if(consumer.getProcessingOrder() != null) {
-        JOptionPane.showMessageDialog(this, "已有訂單正在處理中，請稍後再試");
+      // 檢查是否還有空閒的廚房人員（已放行但還沒開始製作的訂單也算在內）
+      if(consumer.getIdleWorkerCount() <= consumer.getReleasedOrderCount()) {
+        JOptionPane.showMessageDialog(this, "所有廚房人員都在處理訂單，請稍後再試");
         return;
       }
 
-      // 在新執行緒中處理訂單
-      new Thread(() -> {
-        try {
-          // 開始處理下一個訂單
-          consumer.processNextOrder();
-          consumer.startProcessing();
-
-          // 模擬處理時間
-          for(int i = 0; i < 3; i++) {
-            Thread.sleep(1000);
-            SwingUtilities.invokeLater(this::updateStatusPanel);
-          }
+      // 放行一筆訂單給有空的廚房人員，完成時由 completion listener 通知
+      consumer.startProcessing();
+      updateStatusPanel();
+    });
 
-          // 完成訂單
-          AbstractOrder processingOrder = consumer.getProcessingOrder();
-          if(processingOrder != null) {
-            consumer.completedOrder(processingOrder);
+    // 訂單狀態改變時才更新畫面，同一段時間內的多筆事件在 EDT 上合併成一次更新
+    producer.getEventBus().subscribe(EnumSet.allOf(OrderEvent.Type.class), SwingUtilities::invokeLater, this::onOrderEvents);
+  }
 
-            // 更新UI並顯示完成訊息
-            SwingUtilities.invokeLater(() -> {
-              updateStatusPanel();
-              JOptionPane.showMessageDialog(this, "訂單 " + processingOrder.getId() + " 處理完成！", "訂單完成", JOptionPane.INFORMATION_MESSAGE);
-            });
-          }
-        } catch(InterruptedException ex) {
-          Thread.currentThread().interrupt();
-          SwingUtilities.invokeLater(() -> {
-            JOptionPane.showMessageDialog(this, "處理訂單時發生錯誤");
-          });
-        }
-      }).start();
-    });
+  private void onOrderEvents(List<OrderEvent> events) {
+    updateStatusPanel();
+
+    // 這一批事件中完成的訂單，合併成一則完成訊息
+    List<Long> completedIds = new ArrayList<>();
+    for(OrderEvent event : events) {
+      if(event.getType() == OrderEvent.Type.COMPLETED) {
+        completedIds.add(event.getOrder().getId());
+      }
+    }
+
+    if(!completedIds.isEmpty()) {
+      String ids = completedIds.stream().map(String::valueOf).collect(Collectors.joining(", "));
+      JOptionPane.showMessageDialog(this, "訂單 " + ids + " 處理完成！", "訂單完成", JOptionPane.INFORMATION_MESSAGE);
+    }
   }
 
   private void updateStatusPanel() {
     // 更新訂單狀態的數目
     String waitingText = "訂單已接收: " + producer.getTotalOrders().size();
-    String processingText = "正在準備中: " + (consumer.getProcessingOrder() == null ? 0 : 1);
+    String processingText = "正在準備中: " + consumer.getCountOf(OrderStatus.PROCESSING);
     String completedText = "餐點已完成: " + consumer.getCountOfCompletedOrders();
 
     // 更新 labels
@@ -474,8 +457,7 @@ public class OrderSystemUI extends JFrame {
     this.completedTimeLabel.setText("更新時間: " + currentTime);
 
     // 更新訂單金額和今日營業額
-    double currentCartTotal = cartListItems.entrySet().stream().mapToDouble(entry -> entry.getKey().getPrice() * entry.getValue()).sum();
-    this.orderSummaryPanel.updateTotalAmount(currentCartTotal);
+    updateCartTotal();
     this.orderSummaryPanel.updateDailyRevenue(consumer.getRevenue());
 
     // 刷新面板畫面
@@ -483,6 +465,12 @@ public class OrderSystemUI extends JFrame {
     statusPanel.repaint();
   }
 
+  // 購物車金額不是訂單事件，購物車改變時直接更新
+  private void updateCartTotal() {
+    long currentCartCents = cartListItems.entrySet().stream().mapToLong(entry -> entry.getKey().getPriceCents() * entry.getValue()).sum();
+    this.orderSummaryPanel.updateTotalAmount(currentCartCents / 100.0);
+  }
+
   private JPanel createCartItem(MenuItem item, int quantity) {
     // 檢查餐點項目是否已存在在購物車中
     if(this.cartListItems.containsKey(item)) {
@@ -556,29 +544,18 @@ public class OrderSystemUI extends JFrame {
   // 載入已儲存的訂單
   private void loadSavedOrders() {
     try {
-      List<Order> savedOrders = orderFileManager.readAllOrders();
+      List<Order> savedOrders = orderStore.loadOrders();
 
       if(!savedOrders.isEmpty()) {
         for(Order order : savedOrders) {
           switch (order.getStatus()) {
             case WAITING:
-              producer.addOrder(order);
+              // 還原的訂單不經過准入控制
+              producer.restoreOrder(order);
               break;
             case PROCESSING:
-              consumer.setProcessingOrder(order);
-              new Thread(() -> {
-                try {
-                  consumer.startProcessing();
-                  Thread.sleep(3000);
-                  consumer.completedOrder(order);
-                  SwingUtilities.invokeLater(() -> {
-                    updateStatusPanel();
-                    JOptionPane.showMessageDialog(this, "訂單 " + order.getId() + " 處理完成！", "訂單完成", JOptionPane.INFORMATION_MESSAGE);
-                  });
-                } catch(InterruptedException e) {
-                  Thread.currentThread().interrupt();
-                }
-              }).start();
+              // 交還給廚房人員繼續製作
+              consumer.resumeProcessing(order);
               break;
             case COMPLETED:
               consumer.addCompletedOrder(order);
@@ -595,9 +572,20 @@ public class OrderSystemUI extends JFrame {
     }
   }
 
+  // 還原完成後才接上訂單儲存，避免把載入的訂單重複記錄
+  private void startPersistence() {
+    this.producer.setStore(this.orderStore);
+
+    // 檔案儲存在背景合併歷史快照，不阻擋啟動與下單
+    if(this.orderStore instanceof FileOrderStore) {
+      ((FileOrderStore) this.orderStore).compactInBackground(RetentionPolicy.keepAll());
+    }
+  }
+
   // 強制更新 UI 的方法
   private void forceUpdateUI() {
-    // 更新購物車面板
+    // 更新購物車面板與金額
+    updateCartTotal();
     this.cartListPanel.revalidate();
     this.cartListPanel.repaint();
 
@@ -0,0 +1,39 @@
+package com.ordersystem;
+
+import java.util.Objects;
+
+// 測試用的斷言，不依賴任何測試框架
+public class Assert {
+  private Assert() {
+  }
+
+  public static void assertTrue(boolean condition, String message) {
+    if(!condition) {
+      throw new AssertionError(message);
+    }
+  }
+
+  public static void assertFalse(boolean condition, String message) {
+    assertTrue(!condition, message);
+  }
+
+  public static void assertEquals(Object expected, Object actual, String message) {
+    if(!Objects.equals(expected, actual)) {
+      throw new AssertionError(message + "：預期 " + expected + "，實際 " + actual);
+    }
+  }
+
+  public static void assertEquals(long expected, long actual, String message) {
+    if(expected != actual) {
+      throw new AssertionError(message + "：預期 " + expected + "，實際 " + actual);
+    }
+  }
+
+  public static void fail(String message) {
+    throw new AssertionError(message);
+  }
+}
+
+/*
+用途：測試程式共用的斷言方法，失敗時丟出 AssertionError 由 TestRunner 回報。
+ */
@@ -0,0 +1,79 @@
+package com.ordersystem;
+
+import java.io.File;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+
+// 執行所有測試類別（名稱以 Test 結尾）中 static 且名稱以 test 開頭的方法
+// 用法：javac -d out $(find src test -name '*.java') && java -cp out com.ordersystem.TestRunner [類別名稱...]
+public class TestRunner {
+  public static void main(String[] args) throws Exception {
+    List<String> classNames = args.length > 0 ? Arrays.asList(args) : findTestClasses();
+    int passed = 0;
+    int failed = 0;
+
+    for(String className : classNames) {
+      Method[] methods = Class.forName(className).getDeclaredMethods();
+      Arrays.sort(methods, Comparator.comparing(Method::getName));
+
+      for(Method method : methods) {
+        if(!method.getName().startsWith("test") || !Modifier.isStatic(method.getModifiers()) || method.getParameterCount() != 0) {
+          continue;
+        }
+
+        String name = className.substring(className.lastIndexOf('.') + 1) + "." + method.getName();
+        long start = System.nanoTime();
+        try {
+          method.setAccessible(true);
+          method.invoke(null);
+          passed++;
+          System.out.printf("PASS %s (%d ms)%n", name, (System.nanoTime() - start) / 1_000_000);
+        } catch(InvocationTargetException e) {
+          failed++;
+          System.out.println("FAIL " + name);
+          e.getCause().printStackTrace(System.out);
+        }
+      }
+    }
+
+    System.out.printf("%d 個測試通過，%d 個失敗%n", passed, failed);
+    if(failed > 0) {
+      System.exit(1);
+    }
+  }
+
+  // 在 TestRunner 所在的輸出資料夾中找出所有測試類別，新增測試不需要修改這裡
+  private static List<String> findTestClasses() throws Exception {
+    File root = new File(TestRunner.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+    List<String> classNames = new ArrayList<>();
+    collectTestClasses(root, "", classNames);
+    Collections.sort(classNames);
+    return classNames;
+  }
+
+  private static void collectTestClasses(File directory, String packageName, List<String> classNames) {
+    File[] files = directory.listFiles();
+    if(files == null) {
+      return;
+    }
+
+    for(File file : files) {
+      String name = file.getName();
+      if(file.isDirectory()) {
+        collectTestClasses(file, packageName + name + ".", classNames);
+      } else if(name.endsWith("Test.class") && name.indexOf('$') < 0) {
+        classNames.add(packageName + name.substring(0, name.length() - ".class".length()));
+      }
+    }
+  }
+}
+
+/*
+用途：專案沒有建置工具，測試以一般的 Java 程式執行，失敗時以非零結束碼回報。
+ */
@@ -0,0 +1,156 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.MenuItem;
+import com.ordersystem.model.Order;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.List;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.fail;
+
+class BinaryOrderSegmentTest {
+  // 目前的版本（餐點字典、系統時區時間）寫入後讀回完全相同
+  static void testCurrentVersionRoundTrip() throws Exception {
+    File directory = TestOrders.temporaryDirectory("segment-v3");
+    try {
+      List<Order> orders = TestOrders.randomOrders(500, 10);
+      File segment = new File(directory, "orders-test.seg");
+
+      long[] offsets = BinaryOrderSegment.write(segment, orders);
+      List<Order> read = BinaryOrderSegment.read(segment);
+
+      assertEquals(orders.size(), read.size(), "讀回的訂單數");
+      for(int i = 0; i < orders.size(); i++) {
+        TestOrders.assertSameOrder(orders.get(i), read.get(i));
+        TestOrders.assertSameOrder(orders.get(i), BinaryOrderSegment.readAt(segment, offsets[i]));
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 版本 1（項目內嵌名稱與價格）的舊檔案仍然可以讀取
+  static void testVersion1IsStillReadable() throws Exception {
+    File directory = TestOrders.temporaryDirectory("segment-v1");
+    try {
+      List<Order> orders = TestOrders.randomOrders(100, 11);
+      File segment = new File(directory, "orders-legacy.seg");
+      Files.write(segment.toPath(), encodeVersion1(orders));
+
+      List<Order> read = BinaryOrderSegment.read(segment);
+
+      assertEquals(orders.size(), read.size(), "讀回的訂單數");
+      for(int i = 0; i < orders.size(); i++) {
+        TestOrders.assertSameOrder(orders.get(i), read.get(i));
+      }
+
+      // 舊檔案沒有索引，重建後同樣可以定位
+      long[][] entries = BinaryOrderSegment.scanOffsets(segment);
+      for(int i = 0; i < orders.size(); i++) {
+        assertEquals(orders.get(i).getId(), entries[0][i], "掃描的編號");
+        TestOrders.assertSameOrder(orders.get(i), BinaryOrderSegment.readAt(segment, entries[1][i]));
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 檔案中的時間是真正的 epoch 毫秒，不是把牆上時間當成 UTC
+  static void testTimestampsAreRealEpochMillis() throws Exception {
+    TimeZone original = TimeZone.getDefault();
+    File directory = TestOrders.temporaryDirectory("segment-time");
+    try {
+      TimeZone.setDefault(TimeZone.getTimeZone("Asia/Taipei"));
+
+      Order order = new Order(1);
+      order.setTime(LocalDateTime.of(2024, 3, 1, 12, 30, 15));
+      order.addItem(TestOrders.FRIES, 1);
+      File segment = new File(directory, "orders-time.seg");
+      long[] offsets = BinaryOrderSegment.write(segment, List.of(order));
+
+      long stored;
+      try(RandomAccessFile file = new RandomAccessFile(segment, "r")) {
+        file.seek(offsets[0] + 8);
+        stored = file.readLong();
+      }
+
+      long expected = order.getTime().atZone(ZoneId.of("Asia/Taipei")).toInstant().toEpochMilli();
+      assertEquals(expected, stored, "檔案中的 epoch 毫秒");
+      TestOrders.assertSameOrder(order, BinaryOrderSegment.read(segment).get(0));
+    } finally {
+      TimeZone.setDefault(original);
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  static void testRejectsUnknownFile() throws Exception {
+    File directory = TestOrders.temporaryDirectory("segment-bad");
+    try {
+      File segment = new File(directory, "orders-bad.seg");
+      Files.write(segment.toPath(), "not a segment at all".getBytes(StandardCharsets.UTF_8));
+
+      try {
+        BinaryOrderSegment.read(segment);
+        fail("應該拒絕不是區段的檔案");
+      } catch(IOException e) {
+        // 預期的例外
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 依 BinaryOrderSegment 檔頭註解的版本 1 格式編碼，時間以 UTC 換算
+  private static byte[] encodeVersion1(List<Order> orders) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    DataOutputStream output = new DataOutputStream(bytes);
+
+    output.writeInt(0x4F524453);
+    output.writeShort(1);
+    output.writeShort(0);
+    output.writeInt(orders.size());
+    output.writeInt(0);
+
+    for(Order order : orders) {
+      output.writeLong(order.getId());
+      output.writeLong(order.getTime().toInstant(ZoneOffset.UTC).toEpochMilli());
+      output.writeByte(order.getStatus().ordinal());
+
+      Map<MenuItem, Integer> items = order.getItems();
+      writeVarint(output, items.size());
+      for(Map.Entry<MenuItem, Integer> item : items.entrySet()) {
+        byte[] name = item.getKey().getName().getBytes(StandardCharsets.UTF_8);
+        writeVarint(output, name.length);
+        output.write(name);
+        writeVarint(output, item.getKey().getPriceCents());
+        writeVarint(output, item.getValue());
+      }
+    }
+
+    output.flush();
+    return bytes.toByteArray();
+  }
+
+  private static void writeVarint(DataOutputStream output, long value) throws IOException {
+    while((value & ~0x7FL) != 0) {
+      output.writeByte((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    output.writeByte((int) value);
+  }
+}
+
+/*
+用途：驗證二進位區段新舊版本的讀寫、時間戳記的時區，以及損毀檔案的處理。
+ */
@@ -0,0 +1,73 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.Order;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertTrue;
+
+class ConsumerTest {
+  // 預設不等待湊批：只有一筆放行的訂單時立即開始製作
+  static void testSingleOrderIsNotDelayedByDefault() throws Exception {
+    Producer producer = new Producer(new LinkedBlockingQueue<>());
+    Consumer consumer = new Consumer(producer.getQueue(), producer);
+    assertEquals(0, consumer.getBatchWindowMillis(), "預設的批次等待時間");
+
+    producer.submit(OrderFactory.createNextOrder(TestOrders.FRIES, 1));
+    consumer.startProcessing();
+
+    long start = System.nanoTime();
+    CookingBatch batch = consumer.takeNextBatch();
+    long elapsedMillis = (System.nanoTime() - start) / 1_000_000;
+
+    assertEquals(1, batch.getOrders().size(), "批次中的訂單數");
+    assertTrue(elapsedMillis < 100, "單筆訂單等待了 " + elapsedMillis + " ms");
+  }
+
+  // 已經在佇列中且已放行的訂單仍然合併成一批
+  static void testQueuedOrdersAreStillBatched() throws Exception {
+    Producer producer = new Producer(new LinkedBlockingQueue<>());
+    Consumer consumer = new Consumer(producer.getQueue(), producer);
+    consumer.setBatchSize(8);
+
+    for(int i = 0; i < 5; i++) {
+      producer.submit(OrderFactory.createNextOrder(TestOrders.FRIES, 1));
+      consumer.startProcessing();
+    }
+
+    CookingBatch batch = consumer.takeNextBatch();
+    assertEquals(5, batch.getOrders().size(), "批次中的訂單數");
+    assertEquals(1, batch.getLineCount(), "相同餐點合併為一行");
+    assertEquals(5, batch.getItemCount(), "合併後的份數");
+  }
+
+  // 設定等待時間後，單筆訂單會等到時間結束，期間送出的訂單加入同一批
+  static void testBatchWindowWaitsForLateOrders() throws Exception {
+    Producer producer = new Producer(new LinkedBlockingQueue<>());
+    Consumer consumer = new Consumer(producer.getQueue(), producer);
+    consumer.setBatchWindowMillis(500);
+
+    producer.submit(OrderFactory.createNextOrder(TestOrders.FRIES, 1));
+    consumer.startProcessing();
+
+    Thread late = new Thread(() -> {
+      try {
+        Thread.sleep(50);
+      } catch(InterruptedException e) {
+        return;
+      }
+      Order order = OrderFactory.createNextOrder(TestOrders.FRIES, 1);
+      producer.submit(order);
+      consumer.startProcessing();
+    });
+    late.start();
+
+    CookingBatch batch = consumer.takeNextBatch();
+    late.join();
+    assertEquals(2, batch.getOrders().size(), "批次中的訂單數");
+  }
+}
+
+/*
+用途：驗證批次製作預設不增加單筆訂單的等待時間，設定等待時間後才會等待湊批。
+ */
@@ -0,0 +1,131 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.io.File;
+import java.io.IOException;
+import java.time.temporal.ChronoUnit;
+import java.util.HashMap;
+import java.util.Map;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertTrue;
+
+class FileOrderStoreTest {
+  // 寫完日誌紀錄後立刻執行一次檢查點，重現「寫日誌」與「標記變更」之間剛好輪替日誌的情況
+  private static class CheckpointAfterAppendManager extends OrderFileManager {
+    private FileOrderStore store;
+    private volatile boolean enabled = false;
+
+    CheckpointAfterAppendManager(File directory) {
+      super(directory, StorageFormat.BINARY);
+    }
+
+    @Override
+    OrderJournal createJournal(File directory) throws IOException {
+      return new OrderJournal(directory) {
+        @Override
+        public void appendCreated(AbstractOrder order) {
+          super.appendCreated(order);
+          checkpointIfEnabled();
+        }
+
+        @Override
+        public void appendStatus(AbstractOrder order) {
+          super.appendStatus(order);
+          checkpointIfEnabled();
+        }
+      };
+    }
+
+    private void checkpointIfEnabled() {
+      if(this.enabled) {
+        this.enabled = false;
+        this.store.getCheckpointer().requestCheckpoint();
+      }
+    }
+  }
+
+  static void testCheckpointBetweenAppendAndMarkDirtyKeepsOrder() throws Exception {
+    assertCheckpointBetweenStepsKeepsOrder(false);
+  }
+
+  static void testCheckpointBetweenAppendAndMarkDirtyKeepsStatus() throws Exception {
+    assertCheckpointBetweenStepsKeepsOrder(true);
+  }
+
+  private static void assertCheckpointBetweenStepsKeepsOrder(boolean onStatusChange) throws Exception {
+    File directory = TestOrders.temporaryDirectory("store-interleave");
+    try {
+      CheckpointAfterAppendManager fileManager = new CheckpointAfterAppendManager(directory);
+      FileOrderStore store = new FileOrderStore(fileManager, 3_600_000);
+      fileManager.store = store;
+      store.loadOrders();
+
+      Order first = newOrder(1);
+      first.addItem(TestOrders.FRIES, 1);
+      Order second = newOrder(2);
+      second.addItem(TestOrders.COLA, 2);
+      OrderCheckpointer checkpointer = store.getCheckpointer();
+      int expectedCheckpoints = 1;
+
+      if(onStatusChange) {
+        // 兩筆訂單先寫入一次檢查點，之後只有第一筆是已標記的
+        store.orderCreated(first);
+        store.orderCreated(second);
+        checkpointer.requestCheckpoint();
+        awaitCheckpoints(checkpointer, expectedCheckpoints++);
+
+        first.restoreStatus(OrderStatus.PROCESSING);
+        store.statusChanged(first);
+        second.restoreStatus(OrderStatus.COMPLETED);
+        fileManager.enabled = true;
+        store.statusChanged(second);
+      } else {
+        // 先有一筆已標記的訂單，檢查點才會真的輪替日誌
+        store.orderCreated(first);
+        fileManager.enabled = true;
+        store.orderCreated(second);
+      }
+      store.flush();
+
+      // 等待檢查點寫完並刪除封存的日誌區段
+      awaitCheckpoints(checkpointer, expectedCheckpoints);
+
+      // 不呼叫 close，模擬當機
+      FileOrderStore reopened = new FileOrderStore(directory, StorageFormat.BINARY, 3_600_000);
+      Map<Long, Order> recovered = new HashMap<>();
+      for(Order order : reopened.loadOrders()) {
+        recovered.put(order.getId(), order);
+      }
+      reopened.close();
+
+      assertTrue(recovered.containsKey(second.getId()), "當機後遺失了訂單");
+      TestOrders.assertSameOrder(first, recovered.get(first.getId()));
+      TestOrders.assertSameOrder(second, recovered.get(second.getId()));
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  private static void awaitCheckpoints(OrderCheckpointer checkpointer, long count) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + 10_000;
+    while((checkpointer.getCheckpointCount() < count || checkpointer.getPendingCheckpoints() > 0)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(5);
+    }
+    assertEquals(count, checkpointer.getCheckpointCount(), "檢查點次數");
+  }
+
+  // 快照只保存到毫秒
+  private static Order newOrder(long id) {
+    Order order = new Order(id);
+    order.setTime(order.getTime().truncatedTo(ChronoUnit.MILLIS));
+    return order;
+  }
+}
+
+/*
+用途：驗證 FileOrderStore 在檢查點與日誌寫入交錯時不會遺失變更。
+ */
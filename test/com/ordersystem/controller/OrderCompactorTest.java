@@ -0,0 +1,109 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import static com.ordersystem.Assert.assertEquals;
+
+class OrderCompactorTest {
+  // 過舊的已結束訂單被丟棄，進行中與近期的訂單保留，同一筆訂單以最新的快照為準
+  static void testRetentionDropsOldFinishedOrders() throws Exception {
+    File directory = TestOrders.temporaryDirectory("compact-retain");
+    try {
+      LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+      LocalDateTime old = now.minusDays(10);
+      LocalDateTime recent = now.minusDays(1);
+
+      OrderFileManager manager = new OrderFileManager(directory, StorageFormat.BINARY);
+
+      // 第一個快照：之後才完成的舊訂單目前仍在等待
+      manager.saveOrders(List.of(
+        order(1, old, OrderStatus.WAITING),
+        order(2, old, OrderStatus.COMPLETED),
+        order(3, old, OrderStatus.CANCELLED)
+      ));
+
+      // 第二個快照：訂單 1 已完成，其他訂單保留
+      manager.saveOrders(List.of(
+        order(1, old, OrderStatus.COMPLETED),
+        order(4, old, OrderStatus.WAITING),
+        order(5, old, OrderStatus.PROCESSING),
+        order(6, recent, OrderStatus.COMPLETED),
+        order(7, now, OrderStatus.CANCELLED)
+      ));
+
+      CompactionReport report = manager.compactArchive(RetentionPolicy.retainDays(7));
+
+      assertEquals(8L, report.getRecordsRead(), "讀取的紀錄數");
+      assertEquals(4L, report.getOrdersKept(), "保留的訂單數");
+      assertEquals(3L, report.getOrdersDropped(), "丟棄的訂單數");
+      assertEquals(Set.of(4L, 5L, 6L, 7L), ids(manager.readAllOrders()), "壓縮後的訂單");
+
+      // 每個分區只剩一個區段
+      assertEquals(3, OrderFileManager.listSnapshots(directory).length, "壓縮後的區段數");
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // keepAll 只合併快照，不丟棄任何訂單
+  static void testKeepAllOnlyMerges() throws Exception {
+    File directory = TestOrders.temporaryDirectory("compact-keep");
+    try {
+      LocalDateTime old = LocalDateTime.now().minusDays(30);
+      OrderFileManager manager = new OrderFileManager(directory, StorageFormat.BINARY);
+      manager.saveOrders(List.of(order(1, old, OrderStatus.COMPLETED)));
+      manager.saveOrders(List.of(order(2, old, OrderStatus.CANCELLED)));
+
+      CompactionReport report = manager.compactArchive(RetentionPolicy.keepAll());
+
+      assertEquals(0L, report.getOrdersDropped(), "丟棄的訂單數");
+      assertEquals(Set.of(1L, 2L), ids(manager.readAllOrders()), "壓縮後的訂單");
+      assertEquals(1, OrderFileManager.listSnapshots(directory).length, "壓縮後的區段數");
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 快照數少於門檻時不壓縮，也不丟棄任何訂單
+  static void testSkipsWhenTooFewSnapshots() throws Exception {
+    File directory = TestOrders.temporaryDirectory("compact-skip");
+    try {
+      OrderFileManager manager = new OrderFileManager(directory, StorageFormat.BINARY);
+      manager.saveOrders(List.of(order(1, LocalDateTime.now().minusDays(30), OrderStatus.COMPLETED)));
+
+      CompactionReport report = manager.compactArchive(RetentionPolicy.retainDays(7));
+
+      assertEquals(0, report.getFilesCompacted(), "合併的快照數");
+      assertEquals(Set.of(1L), ids(manager.readAllOrders()), "未壓縮的訂單");
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  private static Order order(long id, LocalDateTime time, OrderStatus status) {
+    Order order = new Order(id);
+    order.setTime(time);
+    order.restoreStatus(status);
+    order.addItem(TestOrders.FRIES, 1);
+    return order;
+  }
+
+  private static Set<Long> ids(List<Order> orders) {
+    Set<Long> ids = new TreeSet<>();
+    for(Order order : orders) {
+      ids.add(order.getId());
+    }
+    return ids;
+  }
+}
+
+/*
+用途：驗證壓縮時的保留規則與快照合併。
+ */
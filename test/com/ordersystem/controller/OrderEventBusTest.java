@@ -0,0 +1,82 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertTrue;
+
+class OrderEventBusTest {
+  // 過期與使用者取消同時發生，事件的種類由真正完成取消的一方決定
+  static void testConcurrentExpireAndCancelReportTheWinner() throws Exception {
+    OrderEventBus bus = new OrderEventBus();
+    List<OrderEvent> events = new ArrayList<>();
+    bus.subscribe(EnumSet.of(OrderEvent.Type.CANCELLED, OrderEvent.Type.EXPIRED), received -> {
+      synchronized(events) {
+        events.addAll(received);
+      }
+    });
+
+    CyclicBarrier barrier = new CyclicBarrier(2);
+    int expiredWins = 0;
+    int rounds = 20_000;
+
+    for(int i = 0; i < rounds; i++) {
+      Order order = new Order(i);
+      order.setStatusListener(bus);
+      AtomicBoolean expired = new AtomicBoolean(false);
+
+      Thread expirer = new Thread(() -> {
+        await(barrier);
+        expired.set(order.expire());
+      });
+      expirer.start();
+      await(barrier);
+      boolean cancelled = order.cancel();
+      expirer.join();
+
+      assertTrue(expired.get() != cancelled, "過期與取消只有一方成功");
+      assertEquals(OrderStatus.CANCELLED, order.getStatus(), "訂單狀態");
+      assertEquals(expired.get(), order.isCancelledByExpiry(), "過期原因");
+
+      OrderEvent event;
+      synchronized(events) {
+        assertEquals(1, events.size(), "事件數");
+        event = events.remove(0);
+      }
+      assertEquals(expired.get() ? OrderEvent.Type.EXPIRED : OrderEvent.Type.CANCELLED, event.getType(), "事件種類");
+      if(expired.get()) {
+        expiredWins++;
+      }
+    }
+
+    assertTrue(expiredWins > 0 && expiredWins < rounds, "兩種結果都應該出現過");
+  }
+
+  // 已經開始製作的訂單不會過期，也不會留下過期的原因
+  static void testExpireDoesNotTouchProcessingOrders() {
+    Order order = new Order(1);
+    order.transitionTo(OrderStatus.PROCESSING);
+
+    assertTrue(!order.expire(), "處理中的訂單不會過期");
+    assertTrue(!order.isCancelledByExpiry(), "沒有過期的原因");
+    assertEquals(OrderStatus.PROCESSING, order.getStatus(), "訂單狀態");
+  }
+
+  private static void await(CyclicBarrier barrier) {
+    try {
+      barrier.await();
+    } catch(Exception e) {
+      throw new IllegalStateException(e);
+    }
+  }
+}
+
+/*
+用途：驗證過期與使用者取消同時發生時，發布的事件與真正的取消原因一致。
+ */
@@ -0,0 +1,114 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.function.BooleanSupplier;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertFalse;
+import static com.ordersystem.Assert.assertTrue;
+
+class OrderExpiryWheelTest {
+  // 等待中的訂單在到期之前不會被取消，到期後由時間輪取消並歸還空位
+  static void testExpiresWaitingOrderAtDeadline() throws Exception {
+    Producer producer = new Producer(new LinkedBlockingQueue<>(), 16, OverloadPolicy.reject());
+    // 一圈只有 8 格 × 10 ms，400 ms 的期限要轉好幾圈
+    OrderExpiryWheel wheel = new OrderExpiryWheel(producer, 10, 8);
+    wheel.start();
+    try {
+      long delayMillis = 400;
+      Order order = expiringIn(delayMillis);
+      long submitted = System.nanoTime();
+      assertTrue(producer.submit(order).isAccepted(), "訂單應該被接受");
+
+      Thread.sleep(delayMillis / 2);
+      assertEquals(OrderStatus.WAITING, order.getStatus(), "到期之前的狀態");
+      assertEquals(1, wheel.getPendingCount(), "到期之前的計時器數");
+
+      assertTrue(waitUntil(() -> wheel.getExpiredCount() == 1, 5_000), "訂單應該過期");
+      long elapsedMillis = (System.nanoTime() - submitted) / 1_000_000;
+
+      // 提早過期的誤差只來自 LocalDateTime 與系統時間的換算，不會超過一個 tick
+      assertTrue(elapsedMillis >= delayMillis - wheel.getTickMillis(), "過早過期：" + elapsedMillis + " ms");
+      assertEquals(OrderStatus.CANCELLED, order.getStatus(), "到期後的狀態");
+      assertTrue(order.isCancelledByExpiry(), "應該標記為過期取消");
+      assertEquals(0, wheel.getPendingCount(), "到期後的計時器數");
+
+      assertTrue(waitUntil(() -> producer.getQueuedCount() == 0, 5_000), "過期後應該歸還空位");
+      assertEquals(1L, producer.getTombstoneCount(), "墓碑數");
+    } finally {
+      wheel.stop();
+    }
+  }
+
+  // 已經開始製作或被取消的訂單，計時器一併取消，到期時不會改變狀態
+  static void testStartedOrCancelledOrdersDoNotExpire() throws Exception {
+    Producer producer = new Producer(new LinkedBlockingQueue<>(), 16, OverloadPolicy.reject());
+    OrderExpiryWheel wheel = new OrderExpiryWheel(producer, 10, 8);
+    wheel.start();
+    try {
+      Order started = expiringIn(150);
+      Order cancelled = expiringIn(150);
+      Order waiting = expiringIn(150);
+      assertTrue(producer.submit(started).isAccepted(), "製作中的訂單應該被接受");
+      assertTrue(producer.submit(cancelled).isAccepted(), "取消的訂單應該被接受");
+      assertTrue(producer.submit(waiting).isAccepted(), "等待中的訂單應該被接受");
+
+      assertTrue(started.transitionTo(OrderStatus.PROCESSING), "開始製作");
+      assertTrue(producer.cancelOrder(cancelled.getId()), "取消訂單");
+
+      assertTrue(waitUntil(() -> wheel.getExpiredCount() == 1, 5_000), "等待中的訂單應該過期");
+      Thread.sleep(100);
+
+      assertEquals(1L, wheel.getExpiredCount(), "過期的訂單數");
+      assertEquals(OrderStatus.PROCESSING, started.getStatus(), "製作中的訂單狀態");
+      assertFalse(cancelled.isCancelledByExpiry(), "手動取消不算過期");
+      assertTrue(waiting.isCancelledByExpiry(), "等待中的訂單應該過期");
+      assertEquals(0, wheel.getPendingCount(), "剩餘的計時器數");
+    } finally {
+      wheel.stop();
+    }
+  }
+
+  // 建立時已經超過期限的訂單在下一個 tick 就過期
+  static void testOverdueOrderExpiresOnNextTick() throws Exception {
+    Producer producer = new Producer(new LinkedBlockingQueue<>(), 16, OverloadPolicy.reject());
+    OrderExpiryWheel wheel = new OrderExpiryWheel(producer, 10, 8);
+    wheel.start();
+    try {
+      Order order = expiringIn(-60_000);
+      assertTrue(producer.submit(order).isAccepted(), "訂單應該被接受");
+
+      assertTrue(waitUntil(() -> order.getStatus() == OrderStatus.CANCELLED, 1_000), "逾期的訂單應該立即過期");
+      assertTrue(order.isCancelledByExpiry(), "應該標記為過期取消");
+    } finally {
+      wheel.stop();
+    }
+  }
+
+  // 建立時間往前推，讓訂單在 delayMillis 之後到期
+  private static Order expiringIn(long delayMillis) {
+    Order order = OrderFactory.createNextOrder(TestOrders.FRIES, 1);
+    Duration lifetime = Duration.between(order.getTime(), order.getExpiryTime());
+    order.setTime(LocalDateTime.now().minus(lifetime).plusNanos(delayMillis * 1_000_000));
+    return order;
+  }
+
+  private static boolean waitUntil(BooleanSupplier condition, long timeoutMillis) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMillis;
+    while(!condition.getAsBoolean()) {
+      if(System.currentTimeMillis() > deadline) {
+        return false;
+      }
+      Thread.sleep(5);
+    }
+    return true;
+  }
+}
+
+/*
+用途：驗證時間輪的過期時機，以及開始製作或取消後不會再過期。
+ */
@@ -0,0 +1,271 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.MenuCatalog;
+import com.ordersystem.model.MenuItem;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertFalse;
+import static com.ordersystem.Assert.assertTrue;
+
+class OrderFileManagerTest {
+  // 文字快照中的餐點名稱含有 "-"、換行或欄位名稱時，讀回仍然相同
+  static void testTextSnapshotKeepsUnusualNames() throws Exception {
+    File directory = TestOrders.temporaryDirectory("text-names");
+    try {
+      MenuItem[] items = {
+        MenuCatalog.intern("雞塊-6-塊", 45),
+        MenuCatalog.intern("換行\n名稱-1", 30.5),
+        MenuCatalog.intern("Order ID: 套餐", 120),
+        MenuCatalog.intern("反斜線\\n-", 10),
+        TestOrders.BURGER
+      };
+
+      List<Order> orders = new ArrayList<>();
+      LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+      for(int i = 0; i < items.length; i++) {
+        Order order = new Order(100 + i);
+        order.setTime(base.minusMinutes(i));
+        order.restoreStatus(OrderStatus.WAITING);
+        order.addItem(items[i], 1 + i);
+        order.addItem(TestOrders.FRIES, 2);
+        orders.add(order);
+      }
+
+      new OrderFileManager(directory, StorageFormat.TEXT).saveOrders(orders);
+      List<Order> read = new OrderFileManager(directory, StorageFormat.TEXT).readAllOrders();
+      read.sort(Comparator.comparingLong(Order::getId));
+
+      assertEquals(orders.size(), read.size(), "讀回的訂單數");
+      for(int i = 0; i < orders.size(); i++) {
+        TestOrders.assertSameOrder(orders.get(i), read.get(i));
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 游標與 Stream 的過濾結果和 readAllOrders 之後再過濾相同，兩種格式都一樣
+  static void testCursorMatchesReadAllOrders() throws Exception {
+    for(StorageFormat format : StorageFormat.values()) {
+      File directory = TestOrders.temporaryDirectory("cursor-" + format);
+      try {
+        OrderFileManager manager = new OrderFileManager(directory, format);
+        manager.saveOrders(TestOrders.randomOrders(400, 20));
+        List<Order> all = manager.readAllOrders();
+
+        LocalDateTime now = LocalDateTime.now();
+        OrderFilter[] filters = {
+          OrderFilter.all(),
+          OrderFilter.withStatus(OrderStatus.COMPLETED, OrderStatus.CANCELLED),
+          OrderFilter.between(now.minusMinutes(300), now.minusMinutes(100)),
+          new OrderFilter(EnumSet.noneOf(OrderStatus.class), null, null)
+        };
+
+        for(OrderFilter filter : filters) {
+          Map<Long, Order> expected = new LinkedHashMap<>();
+          for(Order order : all) {
+            if(filter.matches(order.getStatus(), order.getTime())) {
+              expected.put(order.getId(), order);
+            }
+          }
+
+          List<Order> fromCursor = new ArrayList<>();
+          try(OrderCursor cursor = manager.openCursor(filter)) {
+            while(cursor.hasNext()) {
+              fromCursor.add(cursor.next());
+            }
+          }
+
+          List<Order> fromStream;
+          try(Stream<Order> stream = manager.streamOrders(filter)) {
+            fromStream = stream.collect(Collectors.toList());
+          }
+
+          assertSameOrders(expected, fromCursor, format + " 游標");
+          assertSameOrders(expected, fromStream, format + " Stream");
+        }
+      } finally {
+        TestOrders.deleteRecursively(directory);
+      }
+    }
+  }
+
+  // Stream 提早結束時，關閉 Stream 也會關閉底下的游標
+  static void testEarlyTerminationClosesCursor() throws Exception {
+    File directory = TestOrders.temporaryDirectory("cursor-close");
+    try {
+      OrderFileManager manager = new OrderFileManager(directory, StorageFormat.BINARY);
+      manager.saveOrders(TestOrders.randomOrders(200, 21));
+
+      OrderCursor cursor = manager.openCursor(OrderFilter.all());
+      boolean[] closed = { false };
+      OrderCursor tracking = new OrderCursor() {
+        @Override
+        public boolean hasNext() {
+          return cursor.hasNext();
+        }
+
+        @Override
+        public Order next() {
+          return cursor.next();
+        }
+
+        @Override
+        public void close() throws IOException {
+          closed[0] = true;
+          cursor.close();
+        }
+      };
+
+      Optional<Order> first;
+      try(Stream<Order> stream = OrderFileManager.stream(tracking)) {
+        first = stream.findFirst();
+      }
+
+      assertTrue(first.isPresent(), "應該讀到第一筆訂單");
+      assertTrue(closed[0], "關閉 Stream 時應該關閉游標");
+      assertFalse(cursor.hasNext(), "關閉後的游標不應該再回傳訂單");
+
+      // 直接使用游標時，讀到一半關閉也不會再開啟其他快照
+      try(OrderCursor partial = manager.openCursor(OrderFilter.all())) {
+        assertTrue(partial.hasNext(), "應該有訂單");
+        partial.next();
+        partial.close();
+        assertFalse(partial.hasNext(), "關閉後的游標不應該再回傳訂單");
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 區間查詢只回傳 [from, to) 之間的訂單，範圍外的分區完全不開啟
+  static void testOrdersBetweenOpensOnlyPartitionsInRange() throws Exception {
+    File directory = TestOrders.temporaryDirectory("between");
+    try {
+      LocalDateTime day = LocalDateTime.of(2024, 3, 1, 0, 0);
+      List<Order> orders = new ArrayList<>();
+      long id = 1;
+      for(int d = 0; d < 5; d++) {
+        orders.add(order(id++, day.plusDays(d), OrderStatus.COMPLETED));
+        orders.add(order(id++, day.plusDays(d).plusHours(12), OrderStatus.CANCELLED));
+        orders.add(order(id++, day.plusDays(d).plusHours(23).plusMinutes(59), OrderStatus.COMPLETED));
+      }
+
+      OrderFileManager manager = new OrderFileManager(directory, StorageFormat.BINARY);
+      manager.saveOrders(orders);
+
+      // 範圍外的分區換成損毀的檔案，只要被開啟查詢就會失敗
+      corruptPartition(directory, "2024-03-01");
+      corruptPartition(directory, "2024-03-05");
+      // 結束時間剛好是午夜，那一天的分區也不需要開啟
+      corruptPartition(directory, "2024-03-04");
+
+      LocalDateTime from = day.plusDays(1);
+      LocalDateTime to = day.plusDays(3);
+      Map<Long, Order> expected = new LinkedHashMap<>();
+      for(Order order : orders) {
+        if(!order.getTime().isBefore(from) && order.getTime().isBefore(to)) {
+          expected.put(order.getId(), order);
+        }
+      }
+
+      assertSameOrders(expected, manager.ordersBetween(from, to, null), "區間查詢");
+
+      Map<Long, Order> completed = new LinkedHashMap<>();
+      long revenueCents = 0;
+      for(Order order : expected.values()) {
+        if(order.getStatus() == OrderStatus.COMPLETED) {
+          completed.put(order.getId(), order);
+          revenueCents += order.getTotalCents();
+        }
+      }
+
+      assertSameOrders(completed, manager.ordersBetween(from, to, OrderStatus.COMPLETED), "已完成的區間查詢");
+      assertEquals(revenueCents / 100.0, manager.revenueBetween(from, to), "區間營業額");
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 日誌中較新的狀態會套用到區間查詢的結果，狀態過濾以最新狀態為準
+  static void testOrdersBetweenAppliesJournal() throws Exception {
+    File directory = TestOrders.temporaryDirectory("between-journal");
+    try {
+      LocalDateTime day = LocalDateTime.of(2024, 3, 1, 10, 0);
+      Order waiting = order(1, day, OrderStatus.WAITING);
+      Order other = order(2, day.plusHours(1), OrderStatus.WAITING);
+
+      OrderFileManager manager = new OrderFileManager(directory, StorageFormat.BINARY);
+      manager.saveOrders(List.of(waiting, other));
+
+      OrderJournal journal = manager.openJournal();
+      waiting.restoreStatus(OrderStatus.COMPLETED);
+      journal.appendStatus(waiting);
+      journal.sync();
+
+      List<Order> completed = manager.ordersBetween(day.minusHours(1), day.plusDays(1), OrderStatus.COMPLETED);
+      assertSameOrders(Map.of(waiting.getId(), waiting), completed, "日誌更新後的查詢");
+
+      List<Order> stillWaiting = manager.ordersBetween(day.minusHours(1), day.plusDays(1), OrderStatus.WAITING);
+      assertSameOrders(Map.of(other.getId(), other), stillWaiting, "仍在等待的查詢");
+
+      manager.closeJournal();
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  private static Order order(long id, LocalDateTime time, OrderStatus status) {
+    Order order = new Order(id);
+    order.setTime(time);
+    order.restoreStatus(status);
+    order.addItem(TestOrders.FRIES, (int) (id % 3) + 1);
+    order.addItem(TestOrders.COLA, 1);
+    return order;
+  }
+
+  // 把分區內的區段換成無法解析的內容，索引一併刪除
+  private static void corruptPartition(File directory, String partition) throws IOException {
+    File[] files = new File(directory, partition).listFiles();
+    assertTrue(files != null && files.length > 0, "分區 " + partition + " 應該存在");
+
+    for(File file : files) {
+      if(file.getName().endsWith(StorageFormat.BINARY.getExtension())) {
+        Files.write(file.toPath(), "corrupted".getBytes(StandardCharsets.UTF_8));
+      } else {
+        file.delete();
+      }
+    }
+  }
+
+  // 同一筆訂單只出現一次，內容與預期相同
+  private static void assertSameOrders(Map<Long, Order> expected, List<Order> actual, String message) {
+    assertEquals(expected.size(), actual.size(), message + " 的訂單數");
+    for(Order order : actual) {
+      Order expectedOrder = expected.get(order.getId());
+      assertTrue(expectedOrder != null, message + " 多出訂單 " + order.getId());
+      TestOrders.assertSameOrder(expectedOrder, order);
+    }
+  }
+}
+
+/*
+用途：驗證 OrderFileManager 的快照讀寫與查詢。
+ */
@@ -0,0 +1,93 @@
+package com.ordersystem.controller;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertTrue;
+import static com.ordersystem.Assert.fail;
+
+class OrderIdGeneratorTest {
+  private static final int THREADS = 8;
+  private static final int IDS_PER_THREAD = 20_000; // 遠超過每毫秒 1024 個序號，會借用下一毫秒
+
+  // 多個執行緒同時取號：全部不重複、每個執行緒內嚴格遞增、大於舊格式的所有編號
+  static void testConcurrentIdsAreUniqueAndIncreasing() throws Exception {
+    // 舊格式是 currentTimeMillis() 後面接 4 位亂數，到目前為止產生過的最大值
+    long legacyMax = System.currentTimeMillis() * 10_000 + 9_999;
+
+    OrderIdGenerator generator = new OrderIdGenerator(3);
+    long[][] ids = new long[THREADS][IDS_PER_THREAD];
+    CountDownLatch start = new CountDownLatch(1);
+    List<Thread> threads = new ArrayList<>();
+
+    for(int t = 0; t < THREADS; t++) {
+      long[] own = ids[t];
+      Thread thread = new Thread(() -> {
+        try {
+          start.await();
+        } catch(InterruptedException e) {
+          Thread.currentThread().interrupt();
+          return;
+        }
+
+        for(int i = 0; i < own.length; i++) {
+          own[i] = generator.nextId();
+        }
+      });
+      threads.add(thread);
+      thread.start();
+    }
+
+    start.countDown();
+    for(Thread thread : threads) {
+      thread.join();
+    }
+
+    Set<Long> seen = new HashSet<>();
+    for(int t = 0; t < THREADS; t++) {
+      for(int i = 0; i < IDS_PER_THREAD; i++) {
+        long id = ids[t][i];
+
+        if(!seen.add(id)) {
+          fail("編號重複：" + id);
+        }
+        if(i > 0 && id <= ids[t][i - 1]) {
+          fail("執行緒 " + t + " 的編號沒有遞增：" + ids[t][i - 1] + " 之後是 " + id);
+        }
+        assertTrue(id > legacyMax, "編號 " + id + " 應該大於舊格式的 " + legacyMax);
+        assertTrue(OrderValidator.isValidOrderID(String.valueOf(id)), "編號 " + id + " 應該是 17 位數");
+      }
+    }
+
+    assertEquals(THREADS * IDS_PER_THREAD, seen.size(), "不重複的編號數");
+  }
+
+  // 不同節點在同一時間取號也不會重複
+  static void testNodesDoNotOverlap() throws Exception {
+    OrderIdGenerator first = new OrderIdGenerator(0);
+    OrderIdGenerator second = new OrderIdGenerator(OrderIdGenerator.MAX_NODE_ID);
+    Set<Long> seen = new HashSet<>();
+
+    for(int i = 0; i < 5_000; i++) {
+      assertTrue(seen.add(first.nextId()), "節點 0 的編號重複");
+      assertTrue(seen.add(second.nextId()), "節點 " + OrderIdGenerator.MAX_NODE_ID + " 的編號重複");
+    }
+  }
+
+  static void testRejectsInvalidNode() throws Exception {
+    try {
+      new OrderIdGenerator(OrderIdGenerator.MAX_NODE_ID + 1);
+      fail("應該拒絕超出範圍的節點編號");
+    } catch(IllegalArgumentException e) {
+      // 預期的例外
+    }
+  }
+}
+
+/*
+用途：驗證訂單編號在多執行緒下不重複、遞增，且與舊格式的編號不衝突。
+ */
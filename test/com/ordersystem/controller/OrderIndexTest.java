@@ -0,0 +1,160 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.Order;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertTrue;
+
+class OrderIndexTest {
+  // 每個編號透過索引讀到的訂單都和完整掃描的結果相同
+  static void testLookupsMatchFullScan() throws Exception {
+    File directory = TestOrders.temporaryDirectory("index-lookup");
+    try {
+      List<Order> orders = TestOrders.randomOrders(2000, 20);
+      // 區段中的順序不是依編號排序，索引必須自己排序
+      Collections.shuffle(orders, new Random(21));
+
+      File segment = new File(directory, "orders-index.seg");
+      long[] offsets = BinaryOrderSegment.write(segment, orders);
+      long[] ids = new long[orders.size()];
+      for(int i = 0; i < ids.length; i++) {
+        ids[i] = orders.get(i).getId();
+      }
+      OrderIndex.write(OrderIndex.fileFor(segment), ids, offsets);
+
+      Map<Long, Order> scanned = new HashMap<>();
+      for(Order order : BinaryOrderSegment.read(segment)) {
+        scanned.put(order.getId(), order);
+      }
+
+      OrderIndex index = OrderIndex.open(OrderIndex.fileFor(segment));
+      assertEquals(orders.size(), index.size(), "索引項目數");
+      assertLookups(segment, index, scanned);
+
+      // 刪除索引後重建，結果相同
+      assertTrue(OrderIndex.fileFor(segment).delete(), "刪除索引檔");
+      assertLookups(segment, OrderIndex.openOrRebuild(segment), scanned);
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 不存在的編號（包含前後範圍外與中間的空隙）回傳 -1
+  static void testMissingIdsReturnMinusOne() throws Exception {
+    File directory = TestOrders.temporaryDirectory("index-missing");
+    try {
+      List<Order> orders = TestOrders.randomOrders(300, 22);
+      File segment = new File(directory, "orders-missing.seg");
+      BinaryOrderSegment.write(segment, orders);
+      OrderIndex index = OrderIndex.openOrRebuild(segment);
+
+      List<Long> present = new ArrayList<>();
+      for(Order order : orders) {
+        present.add(order.getId());
+      }
+
+      long first = present.get(0);
+      long last = present.get(present.size() - 1);
+      assertEquals(-1, index.find(first - 1), "比最小編號小");
+      assertEquals(-1, index.find(last + 1), "比最大編號大");
+      for(long id = first; id <= last; id++) {
+        if(!present.contains(id)) {
+          assertEquals(-1, index.find(id), "空隙中的編號 " + id);
+        }
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 索引遺失時多個執行緒（與多個 OrderFileManager）同時查詢，只會各自寫自己的暫存檔，結果都正確
+  static void testConcurrentRebuildsDoNotCollide() throws Exception {
+    File directory = TestOrders.temporaryDirectory("index-concurrent");
+    try {
+      List<Order> orders = TestOrders.randomOrders(3000, 23);
+      new OrderFileManager(directory, StorageFormat.BINARY).saveOrders(orders);
+
+      for(int round = 0; round < 5; round++) {
+        deleteFiles(directory, OrderIndex.FILE_SUFFIX);
+        OrderFileManager shared = new OrderFileManager(directory, StorageFormat.BINARY);
+        OrderFileManager other = new OrderFileManager(directory, StorageFormat.BINARY);
+        CyclicBarrier barrier = new CyclicBarrier(8);
+        AtomicReference<Throwable> failure = new AtomicReference<>();
+        List<Thread> threads = new ArrayList<>();
+
+        for(int t = 0; t < 8; t++) {
+          OrderFileManager fileManager = t % 2 == 0 ? shared : other;
+          int first = t;
+          threads.add(new Thread(() -> {
+            try {
+              barrier.await();
+              for(int i = first; i < orders.size(); i += 97) {
+                Order found = fileManager.findOrder(orders.get(i).getId());
+                TestOrders.assertSameOrder(orders.get(i), found);
+              }
+            } catch(Throwable e) {
+              failure.compareAndSet(null, e);
+            }
+          }));
+        }
+
+        for(Thread thread : threads) {
+          thread.start();
+        }
+        for(Thread thread : threads) {
+          thread.join();
+        }
+
+        if(failure.get() != null) {
+          throw new AssertionError("同時查詢失敗", failure.get());
+        }
+        assertEquals(0, countFiles(directory, ".tmp"), "留下的暫存檔");
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  private static void assertLookups(File segment, OrderIndex index, Map<Long, Order> scanned) throws Exception {
+    for(Order expected : scanned.values()) {
+      long offset = index.find(expected.getId());
+      assertTrue(offset >= 0, "索引找不到訂單 " + expected.getId());
+      TestOrders.assertSameOrder(expected, BinaryOrderSegment.readAt(segment, offset));
+    }
+  }
+
+  private static void deleteFiles(File directory, String suffix) {
+    for(File file : directory.listFiles()) {
+      if(file.isDirectory()) {
+        deleteFiles(file, suffix);
+      } else if(file.getName().endsWith(suffix)) {
+        assertTrue(file.delete(), "刪除 " + file.getName());
+      }
+    }
+  }
+
+  private static int countFiles(File directory, String suffix) {
+    int count = 0;
+    for(File file : directory.listFiles()) {
+      if(file.isDirectory()) {
+        count += countFiles(file, suffix);
+      } else if(file.getName().endsWith(suffix)) {
+        count++;
+      }
+    }
+    return count;
+  }
+}
+
+/*
+用途：驗證索引查詢與完整掃描的結果一致，以及索引遺失時可以重建。
+ */
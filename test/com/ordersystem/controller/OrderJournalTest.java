@@ -0,0 +1,287 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.MenuCatalog;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertFalse;
+import static com.ordersystem.Assert.assertTrue;
+import static com.ordersystem.Assert.fail;
+
+class OrderJournalTest {
+  // 同步後當機（不呼叫 close），最後一行只寫了一半，重播仍然得到最新的狀態
+  static void testReplayAfterCrashWithTornTail() throws Exception {
+    File directory = TestOrders.temporaryDirectory("journal-crash");
+    try {
+      List<Order> orders = TestOrders.randomOrders(200, 1);
+      OrderJournal journal = new OrderJournal(directory);
+
+      for(Order order : orders) {
+        order.restoreStatus(OrderStatus.WAITING);
+        journal.appendCreated(order);
+      }
+      for(int i = 0; i < orders.size(); i += 3) {
+        orders.get(i).restoreStatus(OrderStatus.PROCESSING);
+        journal.appendStatus(orders.get(i));
+        orders.get(i).restoreStatus(OrderStatus.COMPLETED);
+        journal.appendStatus(orders.get(i));
+      }
+      journal.sync();
+
+      // 模擬當機時寫到一半的紀錄
+      try(FileOutputStream output = new FileOutputStream(journal.getActiveSegment(), true)) {
+        output.write(("STATUS\t" + orders.get(1).getId() + "\tPROCESS").getBytes(StandardCharsets.UTF_8));
+      }
+
+      Map<Long, Order> replayed = new LinkedHashMap<>();
+      int applied = 0;
+      for(File segment : OrderJournal.listSegments(directory)) {
+        applied += OrderJournal.replay(segment, replayed);
+      }
+
+      assertEquals(orders.size() + 2 * ((orders.size() + 2) / 3), applied, "重播的紀錄數");
+      assertEquals(orders.size(), replayed.size(), "重播的訂單數");
+      for(Order order : orders) {
+        TestOrders.assertSameOrder(order, replayed.get(order.getId()));
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 輪替後的區段依序重播，較新的狀態覆蓋較舊的
+  static void testReplayAcrossRotatedSegments() throws Exception {
+    File directory = TestOrders.temporaryDirectory("journal-rotate");
+    try {
+      Order order = TestOrders.randomOrders(1, 2).get(0);
+      order.restoreStatus(OrderStatus.WAITING);
+
+      OrderJournal journal = new OrderJournal(directory);
+      journal.appendCreated(order);
+      List<File> sealed = journal.rotate();
+      order.restoreStatus(OrderStatus.CANCELLED);
+      journal.appendStatus(order);
+      journal.sync();
+
+      assertEquals(1, sealed.size(), "封存的區段數");
+      Map<Long, Order> replayed = new HashMap<>();
+      for(File segment : OrderJournal.listSegments(directory)) {
+        OrderJournal.replay(segment, replayed);
+      }
+
+      TestOrders.assertSameOrder(order, replayed.get(order.getId()));
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 同一毫秒內連續輪替，每次都封存一個新的區段，不會重新開啟舊的
+  static void testRapidRotationsSealEverySegment() throws Exception {
+    File directory = TestOrders.temporaryDirectory("journal-rapid");
+    try {
+      List<Order> orders = TestOrders.randomOrders(50, 5);
+      OrderJournal journal = new OrderJournal(directory);
+      List<File> sealed = new ArrayList<>();
+
+      for(Order order : orders) {
+        journal.appendCreated(order);
+        sealed = journal.rotate();
+      }
+      journal.close();
+
+      assertEquals(orders.size(), sealed.size(), "封存的區段數");
+      for(File segment : sealed) {
+        assertEquals(1, OrderJournal.replay(segment, new HashMap<>()), segment.getName() + " 的紀錄數");
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 只重播一筆訂單的結果和完整重播相同，其他訂單的紀錄不會被解析
+  static void testReplaySingleOrderMatchesFullReplay() throws Exception {
+    File directory = TestOrders.temporaryDirectory("journal-single");
+    try {
+      List<Order> orders = TestOrders.randomOrders(100, 4);
+      OrderJournal journal = new OrderJournal(directory);
+      for(Order order : orders) {
+        journal.appendCreated(order);
+      }
+      journal.rotate();
+      for(int i = 0; i < orders.size(); i += 2) {
+        orders.get(i).restoreStatus(OrderStatus.CANCELLED);
+        journal.appendStatus(orders.get(i));
+      }
+      journal.sync();
+
+      Map<Long, Order> replayed = new HashMap<>();
+      for(File segment : OrderJournal.listSegments(directory)) {
+        OrderJournal.replay(segment, replayed);
+      }
+
+      // 另一筆訂單的餐點只出現在日誌中，直接寫入紀錄，不經過 MenuCatalog
+      String unknownItem = "只在日誌中的餐點-" + System.nanoTime();
+      long otherId = orders.get(orders.size() - 1).getId() + 100;
+      try(FileOutputStream output = new FileOutputStream(journal.getActiveSegment(), true)) {
+        String record = "CREATE\t" + otherId + "\t2024-01-01T12:00\tWAITING\t" + unknownItem + "\t10.0\t1\n";
+        output.write(record.getBytes(StandardCharsets.UTF_8));
+      }
+      int catalogSize = MenuCatalog.size();
+
+      for(Order order : orders) {
+        Order found = null;
+        for(File segment : OrderJournal.listSegments(directory)) {
+          found = OrderJournal.replay(segment, order.getId(), found);
+        }
+        TestOrders.assertSameOrder(order, found);
+        TestOrders.assertSameOrder(replayed.get(order.getId()), found);
+      }
+
+      Order missing = null;
+      for(File segment : OrderJournal.listSegments(directory)) {
+        missing = OrderJournal.replay(segment, 1, missing);
+      }
+      assertEquals(null, missing, "不存在的訂單");
+      assertEquals(catalogSize, MenuCatalog.size(), "略過的紀錄不應建立餐點");
+      assertEquals(null, MenuCatalog.findByName(unknownItem), "略過的紀錄不應建立餐點");
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 餐點名稱含有分隔字元、換行或反斜線時，重播後的名稱不變
+  static void testNamesWithSeparatorsRoundTrip() throws Exception {
+    File directory = TestOrders.temporaryDirectory("journal-escape");
+    try {
+      String[] names = {"薯條\t大份", "可樂\n(冰)", "漢堡\r\n雙層", "反斜線\\t不是跳脫", "結尾\\"};
+      List<Order> orders = TestOrders.randomOrders(names.length, 5);
+      for(int i = 0; i < names.length; i++) {
+        orders.get(i).addItem(MenuCatalog.intern(names[i], 10 + i), 1);
+      }
+
+      OrderJournal journal = new OrderJournal(directory);
+      for(Order order : orders) {
+        journal.appendCreated(order);
+      }
+      journal.sync();
+
+      Map<Long, Order> replayed = new HashMap<>();
+      int applied = 0;
+      for(File segment : OrderJournal.listSegments(directory)) {
+        applied += OrderJournal.replay(segment, replayed);
+      }
+
+      assertEquals(orders.size(), applied, "每筆訂單都是一行紀錄");
+      for(Order order : orders) {
+        TestOrders.assertSameOrder(order, replayed.get(order.getId()));
+      }
+      for(String name : names) {
+        assertEquals(name, OrderJournal.unescape(OrderJournal.escape(name)), "跳脫後還原");
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 寫入磁碟失敗時 sync 丟出例外，不會一直等下去
+  static void testSyncReportsCommitFailure() throws Exception {
+    File directory = TestOrders.temporaryDirectory("journal-failure");
+    try {
+      AtomicBoolean failing = new AtomicBoolean(false);
+      OrderJournal journal = new OrderJournal(directory) {
+        @Override
+        void write(ByteBuffer buffer) throws IOException {
+          if(failing.get()) {
+            throw new IOException("模擬磁碟錯誤");
+          }
+          super.write(buffer);
+        }
+      };
+
+      Order order = TestOrders.randomOrders(1, 6).get(0);
+      journal.appendCreated(order);
+      journal.sync();
+
+      failing.set(true);
+      journal.appendStatus(order);
+
+      AtomicReference<Throwable> thrown = new AtomicReference<>();
+      Thread syncer = new Thread(() -> {
+        try {
+          journal.sync();
+        } catch(Throwable e) {
+          thrown.set(e);
+        }
+      });
+      syncer.start();
+      syncer.join(5000);
+
+      assertFalse(syncer.isAlive(), "sync 沒有在時間內結束");
+      assertTrue(thrown.get() instanceof IOException, "sync 應該丟出 IOException，實際為 " + thrown.get());
+
+      // 失敗的紀錄已經遺失，之後的 sync 也不能回報成功
+      failing.set(false);
+      journal.appendStatus(order);
+      try {
+        journal.sync();
+        fail("寫入失敗之後 sync 不應該成功");
+      } catch(IOException e) {
+        // 預期的例外
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+
+  // 透過 FileOrderStore 記錄變更後當機，重新開啟同一個資料夾可以還原
+  static void testFileOrderStoreRecoversAfterCrash() throws Exception {
+    File directory = TestOrders.temporaryDirectory("store-crash");
+    try {
+      FileOrderStore store = new FileOrderStore(directory, StorageFormat.BINARY, 3_600_000);
+      store.loadOrders();
+
+      List<Order> orders = TestOrders.randomOrders(50, 3);
+      for(Order order : orders) {
+        OrderStatus status = order.getStatus();
+        order.restoreStatus(OrderStatus.WAITING);
+        store.orderCreated(order);
+        order.restoreStatus(status);
+        store.statusChanged(order);
+      }
+      store.flush();
+
+      // 不呼叫 close，模擬當機
+      FileOrderStore reopened = new FileOrderStore(directory, StorageFormat.BINARY, 3_600_000);
+      Map<Long, Order> recovered = new HashMap<>();
+      for(Order order : reopened.loadOrders()) {
+        recovered.put(order.getId(), order);
+      }
+      reopened.close();
+
+      assertEquals(orders.size(), recovered.size(), "還原的訂單數");
+      for(Order order : orders) {
+        assertTrue(recovered.containsKey(order.getId()), "找不到訂單 " + order.getId());
+        TestOrders.assertSameOrder(order, recovered.get(order.getId()));
+      }
+    } finally {
+      TestOrders.deleteRecursively(directory);
+    }
+  }
+}
+
+/*
+用途：驗證日誌在當機後可以重播，包含寫到一半的最後一行與輪替過的區段。
+ */
@@ -0,0 +1,100 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.MenuCatalog;
+import com.ordersystem.model.MenuItem;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+public class OrderQueueBenchmark {
+  private static final MenuItem ITEM = MenuCatalog.intern("薯條", 20); // 測試用的餐點
+  private static final int CAPACITY = 1024;
+  private static final int BATCH = 16; // 消費者每次最多取出的筆數
+
+  // 用法：javac -d out $(find src test -name '*.java') && java -cp out com.ordersystem.controller.OrderQueueBenchmark [訂單數] [生產者數] [消費者數]
+  public static void main(String[] args) throws Exception {
+    int orders = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+    int producers = args.length > 1 ? Integer.parseInt(args[1]) : 2;
+    int consumers = args.length > 2 ? Integer.parseInt(args[2]) : 2;
+
+    // 先建立所有訂單，只量測交接的成本
+    List<AbstractOrder> prepared = new ArrayList<>(orders);
+    for(int i = 0; i < orders; i++) {
+      prepared.add(OrderFactory.createNextOrder(ITEM, 1));
+    }
+
+    System.out.printf("%-14s %14s%n", "queue", "orders/s");
+
+    run("linked", prepared, producers, consumers, () -> new LinkedBlockingQueue<>(CAPACITY));
+    run("array", prepared, producers, consumers, () -> new ArrayBlockingQueue<>(CAPACITY));
+    for(RingBufferQueue.WaitStrategy strategy : RingBufferQueue.WaitStrategy.values()) {
+      run("ring-" + strategy.name().toLowerCase(), prepared, producers, consumers, () -> new RingBufferQueue<>(CAPACITY, strategy));
+    }
+  }
+
+  private static void run(String name, List<AbstractOrder> orders, int producers, int consumers,
+      Supplier<BlockingQueue<AbstractOrder>> factory) throws Exception {
+    BlockingQueue<AbstractOrder> queue = factory.get();
+    int share = orders.size() / producers;
+    int total = share * producers;
+    int[] received = new int[consumers];
+
+    List<Thread> threads = new ArrayList<>();
+    for(int p = 0; p < producers; p++) {
+      List<AbstractOrder> slice = orders.subList(p * share, (p + 1) * share);
+      threads.add(new Thread(() -> {
+        try {
+          for(AbstractOrder order : slice) {
+            queue.put(order);
+          }
+        } catch(InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }));
+    }
+
+    // 消費者先等一筆，再用 drainTo 一次取出其餘已到的訂單
+    int perConsumer = total / consumers;
+    for(int c = 0; c < consumers; c++) {
+      int index = c;
+      int quota = c == consumers - 1 ? total - perConsumer * (consumers - 1) : perConsumer;
+      threads.add(new Thread(() -> {
+        List<AbstractOrder> batch = new ArrayList<>(BATCH);
+        try {
+          while(received[index] < quota) {
+            AbstractOrder first = queue.poll(100, TimeUnit.MILLISECONDS);
+            if(first == null) {
+              continue;
+            }
+
+            batch.clear();
+            queue.drainTo(batch, Math.min(BATCH, quota - received[index]) - 1);
+            received[index] += 1 + batch.size();
+          }
+        } catch(InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }));
+    }
+
+    long start = System.nanoTime();
+    for(Thread thread : threads) {
+      thread.start();
+    }
+    for(Thread thread : threads) {
+      thread.join();
+    }
+    long elapsed = System.nanoTime() - start;
+
+    System.out.printf("%-14s %14.0f%n", name, total / (elapsed / 1e9));
+  }
+}
+
+/*
+用途：比較 LinkedBlockingQueue、ArrayBlockingQueue 與各種等待策略的 RingBufferQueue 交接訂單的吞吐量。
+ */
@@ -0,0 +1,93 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.MenuCatalog;
+import com.ordersystem.model.MenuItem;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import com.ordersystem.model.OrderStore;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+
+public class OrderStoreBenchmark {
+  private static final MenuItem ITEM = MenuCatalog.intern("薯條", 20); // 測試用的餐點
+
+  // 用法：javac -d out $(find src test -name '*.java') && java -cp out com.ordersystem.controller.OrderStoreBenchmark [訂單數] [執行緒數]
+  public static void main(String[] args) throws Exception {
+    int orders = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+    int threads = args.length > 1 ? Integer.parseInt(args[1]) : 4;
+
+    System.out.printf("%-10s %12s %12s %12s%n", "store", "ops/s", "close ms", "reload ms");
+
+    run("memory", orders, threads, directory -> new InMemoryOrderStore());
+    run("journaled", orders, threads, FileOrderStore::journaled);
+    run("mapped", orders, threads, FileOrderStore::mapped);
+  }
+
+  // 每筆訂單記錄三次變更：新增、開始處理、完成
+  private static void run(String name, int orders, int threads, Function<File, OrderStore> factory) throws Exception {
+    File directory = Files.createTempDirectory("order-store-" + name).toFile();
+
+    try {
+      OrderStore store = factory.apply(directory);
+      store.loadOrders();
+
+      long start = System.nanoTime();
+      List<Thread> workers = new ArrayList<>();
+      for(int t = 0; t < threads; t++) {
+        int share = orders / threads;
+        Thread worker = new Thread(() -> {
+          for(int i = 0; i < share; i++) {
+            Order order = OrderFactory.createNextOrder(ITEM, 1);
+            store.orderCreated(order);
+            order.transitionTo(OrderStatus.PROCESSING);
+            store.statusChanged(order);
+            order.transitionTo(OrderStatus.COMPLETED);
+            store.statusChanged(order);
+          }
+        });
+        workers.add(worker);
+        worker.start();
+      }
+      for(Thread worker : workers) {
+        worker.join();
+      }
+      store.flush();
+      long elapsed = System.nanoTime() - start;
+
+      long closeStart = System.nanoTime();
+      store.close();
+      long closeMillis = (System.nanoTime() - closeStart) / 1_000_000;
+
+      // 重新開啟同一個資料夾，量測還原的成本
+      long reloadStart = System.nanoTime();
+      OrderStore reopened = factory.apply(directory);
+      reopened.loadOrders();
+      long reloadMillis = (System.nanoTime() - reloadStart) / 1_000_000;
+      reopened.close();
+
+      double opsPerSecond = (orders / threads) * threads * 3 / (elapsed / 1e9);
+      System.out.printf("%-10s %12.0f %12d %12d%n", name, opsPerSecond, closeMillis, reloadMillis);
+    } finally {
+      deleteRecursively(directory);
+    }
+  }
+
+  private static void deleteRecursively(File file) throws IOException {
+    File[] children = file.listFiles();
+    if(children != null) {
+      for(File child : children) {
+        deleteRecursively(child);
+      }
+    }
+
+    Files.deleteIfExists(file.toPath());
+  }
+}
+
+/*
+用途：在同一個測試程式中比較各種 OrderStore 的吞吐量、關閉時間與重新載入時間。
+ */
@@ -0,0 +1,253 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.AbstractOrder;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.atomic.LongAdder;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertFalse;
+import static com.ordersystem.Assert.assertTrue;
+
+class ProducerTest {
+  // 佇列已滿時拒絕，取消後空位立即歸還
+  static void testCancelReturnsPermitImmediately() {
+    Producer producer = new Producer(new LinkedBlockingQueue<>(), 4, OverloadPolicy.reject());
+    List<Order> orders = new ArrayList<>();
+    for(int i = 0; i < 4; i++) {
+      Order order = OrderFactory.createNextOrder(TestOrders.FRIES, 1);
+      orders.add(order);
+      assertEquals(AdmissionResult.ACCEPTED, producer.submit(order), "第 " + i + " 筆");
+    }
+
+    assertEquals(AdmissionResult.REJECTED_QUEUE_FULL, producer.submit(OrderFactory.createNextOrder(TestOrders.FRIES, 1)), "佇列已滿");
+    assertTrue(producer.cancelOrder(orders.get(0).getId()), "取消第一筆");
+    assertFalse(producer.cancelOrder(orders.get(0).getId()), "不能重複取消");
+    assertEquals(3, producer.getQueuedCount(), "取消後佔用的空位");
+    assertEquals(AdmissionResult.ACCEPTED, producer.submit(OrderFactory.createNextOrder(TestOrders.FRIES, 1)), "取消後可以再接受");
+  }
+
+  // 同一個編號同時送出，只接受一筆，被拒絕的不會佔用空位
+  static void testConcurrentDuplicateSubmitsAcceptOnce() throws Exception {
+    int threads = 8;
+    int rounds = 200;
+    Producer producer = new Producer(new LinkedBlockingQueue<>(), 1000, OverloadPolicy.reject());
+
+    for(int round = 0; round < rounds; round++) {
+      long id = 1_000_000 + round;
+      CyclicBarrier barrier = new CyclicBarrier(threads);
+      LongAdder accepted = new LongAdder();
+      List<Thread> submitters = new ArrayList<>();
+
+      for(int t = 0; t < threads; t++) {
+        submitters.add(new Thread(() -> {
+          Order order = new Order(id);
+          order.addItem(TestOrders.FRIES, 1);
+          try {
+            barrier.await();
+          } catch(Exception e) {
+            return;
+          }
+
+          if(producer.submit(order).isAccepted()) {
+            accepted.increment();
+          }
+        }));
+      }
+
+      for(Thread submitter : submitters) {
+        submitter.start();
+      }
+      for(Thread submitter : submitters) {
+        submitter.join();
+      }
+
+      assertEquals(1, accepted.sum(), "編號 " + id + " 接受的次數");
+    }
+
+    assertEquals(rounds, producer.getQueuedCount(), "佔用的空位");
+    assertEquals(rounds, producer.getQueue().size(), "佇列中的訂單數");
+    assertEquals((long) rounds * (threads - 1), producer.getRejectedCount(AdmissionResult.REJECTED_DUPLICATE), "重複被拒絕的次數");
+  }
+
+  // 不經過 Producer 的取消與過期也會透過事件歸還空位，訂單留在佇列中當作墓碑，同一筆只歸還一次
+  static void testTombstoneCancellationReleasesPermitOnce() {
+    Producer producer = new Producer(new LinkedBlockingQueue<>(), 3, OverloadPolicy.reject());
+    List<Order> orders = new ArrayList<>();
+    for(int i = 0; i < 3; i++) {
+      Order order = OrderFactory.createNextOrder(TestOrders.FRIES, 1);
+      orders.add(order);
+      assertEquals(AdmissionResult.ACCEPTED, producer.submit(order), "第 " + i + " 筆");
+    }
+
+    assertTrue(orders.get(0).transitionTo(OrderStatus.CANCELLED), "直接取消");
+    assertEquals(2, producer.getQueuedCount(), "取消後佔用的空位");
+    assertTrue(orders.get(1).expire(), "過期");
+    assertEquals(1, producer.getQueuedCount(), "過期後佔用的空位");
+    assertEquals(2L, producer.getTombstoneCount(), "墓碑數");
+    assertEquals(3, producer.getQueue().size(), "墓碑仍在佇列中");
+
+    // 重複的取消事件不會再歸還空位
+    producer.getEventBus().publish(OrderEvent.Type.CANCELLED, orders.get(0));
+    assertEquals(1, producer.getQueuedCount(), "重複事件後佔用的空位");
+    assertEquals(2L, producer.getTombstoneCount(), "重複事件後的墓碑數");
+
+    // 歸還的空位可以給新訂單使用，但不會超過容量
+    assertTrue(producer.submit(OrderFactory.createNextOrder(TestOrders.FRIES, 1)).isAccepted(), "第一個空位");
+    assertTrue(producer.submit(OrderFactory.createNextOrder(TestOrders.FRIES, 1)).isAccepted(), "第二個空位");
+    assertEquals(AdmissionResult.REJECTED_QUEUE_FULL, producer.submit(OrderFactory.createNextOrder(TestOrders.FRIES, 1)), "空位用完");
+  }
+
+  // 墓碑比有效訂單多時整批清除，佇列只剩有效的訂單
+  static void testTombstonesArePurgedWhenTheyOutnumberLiveOrders() {
+    int count = 200;
+    Producer producer = new Producer(new LinkedBlockingQueue<>(), count, OverloadPolicy.reject());
+    List<Order> orders = new ArrayList<>();
+    for(int i = 0; i < count; i++) {
+      Order order = OrderFactory.createNextOrder(TestOrders.FRIES, 1);
+      orders.add(order);
+      assertTrue(producer.submit(order).isAccepted(), "第 " + i + " 筆");
+    }
+
+    int live = 10;
+    for(int i = live; i < count; i++) {
+      assertTrue(producer.cancelOrder(orders.get(i).getId()), "取消第 " + i + " 筆");
+    }
+
+    assertEquals(live, producer.getQueuedCount(), "佔用的空位");
+    assertEquals((long) (count - live), producer.getTombstoneCount(), "墓碑數");
+    assertTrue(producer.getPurgedCount() > 0, "應該清除過墓碑");
+
+    int cancelledInQueue = 0;
+    for(AbstractOrder queued : producer.getQueue()) {
+      if(queued.getStatus() == OrderStatus.CANCELLED) {
+        cancelledInQueue++;
+      }
+    }
+    assertEquals((long) (count - live), producer.getPurgedCount() + cancelledInQueue, "清除與留下的墓碑");
+    assertEquals(live + cancelledInQueue, producer.getQueue().size(), "佇列中的訂單數");
+  }
+
+  // 同時下單、取消與製作，結束後所有空位都歸還，每筆訂單都在最終狀態
+  static void testPermitAccountingUnderConcurrentSubmitAndCancel() throws Exception {
+    int capacity = 32;
+    Producer producer = new Producer(new LinkedBlockingQueue<>(), capacity, OverloadPolicy.reject());
+    Consumer consumer = new Consumer(producer.getQueue(), producer);
+    consumer.setCookMillis(0);
+    consumer.setBatchWindowMillis(0);
+    consumer.start(2);
+
+    LongAdder submitted = new LongAdder();
+    LongAdder accepted = new LongAdder();
+    List<Thread> threads = new ArrayList<>();
+    for(int t = 0; t < 4; t++) {
+      long seed = t;
+      threads.add(new Thread(() -> {
+        Random random = new Random(seed);
+        for(int i = 0; i < 5000; i++) {
+          Order order = OrderFactory.createNextOrder(TestOrders.FRIES, 1);
+          submitted.increment();
+          if(!producer.submit(order).isAccepted()) {
+            continue;
+          }
+
+          accepted.increment();
+          consumer.startProcessing();
+          if(random.nextBoolean()) {
+            producer.cancelOrder(order.getId());
+          }
+        }
+      }));
+    }
+
+    for(Thread thread : threads) {
+      thread.start();
+    }
+    for(Thread thread : threads) {
+      thread.join();
+    }
+
+    // 等待廚房人員處理完所有放行的訂單
+    long deadline = System.currentTimeMillis() + 30_000;
+    while((consumer.getCountOf(OrderStatus.WAITING) > 0 || consumer.getCountOf(OrderStatus.PROCESSING) > 0)
+        && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    consumer.stop();
+
+    assertEquals(0, consumer.getCountOf(OrderStatus.WAITING), "等待中的訂單");
+    assertEquals(0, consumer.getCountOf(OrderStatus.PROCESSING), "處理中的訂單");
+    assertEquals(0, producer.getQueuedCount(), "佔用的空位");
+    assertEquals(submitted.sum(), producer.getAcceptedCount() + producer.getRejectedCount(), "接受加拒絕等於送出");
+    assertEquals(accepted.sum(), producer.getAcceptedCount(), "接受的訂單數");
+    assertEquals(accepted.sum(), consumer.getCountOf(OrderStatus.COMPLETED) + consumer.getCountOf(OrderStatus.CANCELLED), "最終狀態的訂單數");
+
+    for(AbstractOrder order : producer.getTotalOrders()) {
+      assertTrue(order.getStatus().isFinal(), "訂單 " + order.getId() + " 不在最終狀態");
+    }
+  }
+
+  // 新增紀錄一定排在同一筆訂單的任何狀態變更紀錄之前，否則重播時狀態變更會被略過
+  static void testCreateIsRecordedBeforeAnyStatusChange() throws Exception {
+    int count = 3000;
+    Producer producer = new Producer(new LinkedBlockingQueue<>(), count, OverloadPolicy.reject());
+    List<String> records = Collections.synchronizedList(new ArrayList<>());
+    producer.setStore(new InMemoryOrderStore() {
+      @Override
+      public void orderCreated(AbstractOrder order) {
+        records.add("CREATE " + order.getId());
+      }
+
+      @Override
+      public void statusChanged(AbstractOrder order) {
+        records.add("STATUS " + order.getId());
+      }
+    });
+
+    Consumer consumer = new Consumer(producer.getQueue(), producer);
+    consumer.setCookMillis(0);
+    consumer.setBatchWindowMillis(0);
+    consumer.start(4);
+
+    // 先放行，廚房人員在佇列上等待，訂單一放進佇列就可能被取走
+    for(int i = 0; i < count; i++) {
+      consumer.startProcessing();
+    }
+    for(int i = 0; i < count; i++) {
+      Order order = OrderFactory.createNextOrder(TestOrders.FRIES, 1);
+      assertTrue(producer.submit(order).isAccepted(), "第 " + i + " 筆");
+    }
+
+    long deadline = System.currentTimeMillis() + 30_000;
+    while(consumer.getCountOf(OrderStatus.COMPLETED) < count && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    consumer.stop();
+    assertEquals(count, consumer.getCountOf(OrderStatus.COMPLETED), "完成的訂單數");
+
+    Set<String> created = new HashSet<>();
+    synchronized(records) {
+      for(String record : records) {
+        String id = record.substring(record.indexOf(' ') + 1);
+        if(record.startsWith("CREATE")) {
+          created.add(id);
+        } else {
+          assertTrue(created.contains(id), "訂單 " + id + " 的狀態變更排在新增之前");
+        }
+      }
+    }
+    assertEquals(count, created.size(), "新增紀錄數");
+  }
+}
+
+/*
+用途：驗證准入控制的空位計算，取消與取出只會歸還一次空位，以及佇列墓碑的清除。
+ */
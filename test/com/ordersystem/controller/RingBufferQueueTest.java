@@ -0,0 +1,122 @@
+package com.ordersystem.controller;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertFalse;
+import static com.ordersystem.Assert.assertTrue;
+
+class RingBufferQueueTest {
+  private static final int PRODUCERS = 4;
+  private static final int CONSUMERS = 4;
+  private static final int PER_PRODUCER = 50_000;
+
+  static void testMultiProducerMultiConsumerPark() throws Exception {
+    assertEveryElementDeliveredOnce(RingBufferQueue.WaitStrategy.PARK);
+  }
+
+  static void testMultiProducerMultiConsumerYield() throws Exception {
+    assertEveryElementDeliveredOnce(RingBufferQueue.WaitStrategy.YIELD);
+  }
+
+  static void testCapacityAndOfferWhenFull() {
+    RingBufferQueue<Integer> queue = new RingBufferQueue<>(5, RingBufferQueue.WaitStrategy.PARK);
+    assertEquals(8, queue.capacity(), "容量調整為 2 的次方");
+
+    for(int i = 0; i < 8; i++) {
+      assertTrue(queue.offer(i), "第 " + i + " 筆應該放得進去");
+    }
+    assertFalse(queue.offer(8), "佇列已滿");
+
+    assertEquals(0, (int) queue.poll(), "先進先出");
+    assertTrue(queue.offer(8), "取出後有空位");
+  }
+
+  // 已移除的格子不會被取出，也不會被 drainTo 計入
+  static void testRemoveAndRemoveIfSkipSlots() {
+    RingBufferQueue<Integer> queue = new RingBufferQueue<>(16, RingBufferQueue.WaitStrategy.PARK);
+    for(int i = 0; i < 10; i++) {
+      queue.offer(i);
+    }
+
+    assertTrue(queue.remove(Integer.valueOf(3)), "移除 3");
+    assertTrue(queue.removeIf(value -> value % 2 == 0), "移除偶數");
+
+    List<Integer> drained = new ArrayList<>();
+    queue.drainTo(drained);
+    assertEquals(List.of(1, 5, 7, 9), drained, "剩下的元素");
+    assertEquals(null, queue.poll(), "佇列已空");
+  }
+
+  // 多個生產者與消費者同時存取，每個元素都剛好被取出一次
+  private static void assertEveryElementDeliveredOnce(RingBufferQueue.WaitStrategy strategy) throws Exception {
+    RingBufferQueue<Integer> queue = new RingBufferQueue<>(1024, strategy);
+    int total = PRODUCERS * PER_PRODUCER;
+    AtomicIntegerArray seen = new AtomicIntegerArray(total);
+    AtomicLong consumed = new AtomicLong(0);
+    List<Thread> threads = new ArrayList<>();
+
+    for(int p = 0; p < PRODUCERS; p++) {
+      int base = p * PER_PRODUCER;
+      threads.add(new Thread(() -> {
+        try {
+          for(int i = 0; i < PER_PRODUCER; i++) {
+            queue.put(base + i);
+          }
+        } catch(InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }));
+    }
+
+    for(int c = 0; c < CONSUMERS; c++) {
+      boolean useDrain = c % 2 == 0;
+      threads.add(new Thread(() -> {
+        List<Integer> batch = new ArrayList<>();
+        try {
+          while(consumed.get() < total) {
+            batch.clear();
+            if(useDrain) {
+              queue.drainTo(batch, 32);
+            }
+            if(batch.isEmpty()) {
+              Integer value = queue.poll(10, TimeUnit.MILLISECONDS);
+              if(value != null) {
+                batch.add(value);
+              }
+            }
+
+            for(int value : batch) {
+              seen.incrementAndGet(value);
+            }
+            consumed.addAndGet(batch.size());
+          }
+        } catch(InterruptedException e) {
+          Thread.currentThread().interrupt();
+        }
+      }));
+    }
+
+    for(Thread thread : threads) {
+      thread.start();
+    }
+    for(Thread thread : threads) {
+      thread.join(60_000);
+      assertFalse(thread.isAlive(), "執行緒沒有在時間內結束");
+    }
+
+    assertEquals(total, consumed.get(), "取出的總數");
+    for(int i = 0; i < total; i++) {
+      assertEquals(1, seen.get(i), "元素 " + i + " 被取出的次數");
+    }
+    assertEquals(0, queue.size(), "佇列已清空");
+  }
+}
+
+/*
+用途：驗證環狀緩衝區在多生產者、多消費者下不會遺失或重複元素，以及移除後的格子會被略過。
+ */
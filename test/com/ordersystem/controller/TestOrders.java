@@ -0,0 +1,82 @@
+package com.ordersystem.controller;
+
+import com.ordersystem.model.MenuCatalog;
+import com.ordersystem.model.MenuItem;
+import com.ordersystem.model.Order;
+import com.ordersystem.model.OrderStatus;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.ordersystem.Assert.assertEquals;
+
+// 測試共用的訂單產生與比較方法
+class TestOrders {
+  static final MenuItem FRIES = MenuCatalog.intern("測試薯條", 20);
+  static final MenuItem COLA = MenuCatalog.intern("測試可樂", 15.5);
+  static final MenuItem BURGER = MenuCatalog.intern("測試漢堡 - 雙層", 89.99);
+
+  private static final MenuItem[] ITEMS = { FRIES, COLA, BURGER };
+  private static final OrderStatus[] STATUSES = OrderStatus.values();
+
+  private TestOrders() {
+  }
+
+  // 產生 count 筆隨機訂單，編號遞增但不連續
+  static List<Order> randomOrders(int count, long seed) {
+    Random random = new Random(seed);
+    List<Order> orders = new ArrayList<>();
+    long id = 1_000_000;
+    LocalDateTime base = LocalDateTime.now().truncatedTo(ChronoUnit.MILLIS);
+
+    for(int i = 0; i < count; i++) {
+      id += 1 + random.nextInt(5);
+      Order order = new Order(id);
+      order.setTime(base.minusMinutes(random.nextInt(600)));
+      order.restoreStatus(STATUSES[random.nextInt(STATUSES.length)]);
+
+      int lines = 1 + random.nextInt(ITEMS.length);
+      for(int line = 0; line < lines; line++) {
+        order.addItem(ITEMS[line], 1 + random.nextInt(9));
+      }
+      orders.add(order);
+    }
+
+    return orders;
+  }
+
+  static void assertSameOrder(Order expected, Order actual) {
+    String prefix = "訂單 " + expected.getId();
+    assertEquals(expected.getId(), actual.getId(), prefix + " 編號");
+    assertEquals(expected.getTime(), actual.getTime(), prefix + " 時間");
+    assertEquals(expected.getStatus(), actual.getStatus(), prefix + " 狀態");
+    assertEquals(expected.getItems(), actual.getItems(), prefix + " 餐點");
+    assertEquals(expected.getTotalCents(), actual.getTotalCents(), prefix + " 金額");
+  }
+
+  static File temporaryDirectory(String prefix) throws IOException {
+    File directory = Files.createTempDirectory(prefix).toFile();
+    directory.deleteOnExit();
+    return directory;
+  }
+
+  static void deleteRecursively(File file) {
+    File[] children = file.listFiles();
+    if(children != null) {
+      for(File child : children) {
+        deleteRecursively(child);
+      }
+    }
+
+    file.delete();
+  }
+}
+
+/*
+用途：各個測試共用的隨機訂單、比較與暫存資料夾工具。
+ */
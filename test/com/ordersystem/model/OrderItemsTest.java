@@ -0,0 +1,42 @@
+package com.ordersystem.model;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertFalse;
+import static com.ordersystem.Assert.assertTrue;
+
+class OrderItemsTest {
+  // 查詢訂單中沒有、目錄中也沒有的餐點不會登錄到目錄
+  static void testLookupsDoNotRegisterUnknownItems() {
+    MenuItem fries = MenuCatalog.intern("查詢測試薯條", 20);
+    Order order = new Order(1);
+    order.addItem(fries, 2);
+
+    int catalogSize = MenuCatalog.size();
+    MenuItem unknown = new MenuItem("查詢測試不存在的餐點-" + System.nanoTime(), 10, "");
+
+    assertEquals(0, order.getQuantity(unknown), "沒有點的餐點");
+    assertFalse(order.getItems().containsKey(unknown), "containsKey");
+    assertEquals(null, order.getItems().get(unknown), "get");
+    assertEquals(null, order.getItem(unknown.getName()), "getItem");
+    assertEquals(-1, MenuCatalog.find(unknown), "目錄中沒有的餐點");
+    assertEquals(catalogSize, MenuCatalog.size(), "查詢後目錄的大小");
+    assertEquals(null, MenuCatalog.findByName(unknown.getName()), "查詢後目錄中仍然沒有");
+  }
+
+  // 名稱與價格相同但不是目錄中的物件，仍然查得到數量
+  static void testLookupsMatchEquivalentItems() {
+    MenuItem cola = MenuCatalog.intern("查詢測試可樂", 15);
+    Order order = new Order(2);
+    order.addItem(cola, 3);
+
+    MenuItem copy = new MenuItem("查詢測試可樂", 15, "");
+    assertEquals(cola.getCatalogId(), MenuCatalog.find(copy), "相同餐點的編號");
+    assertEquals(3, order.getQuantity(copy), "相同餐點的數量");
+    assertTrue(order.getItems().containsKey(copy), "containsKey");
+    assertEquals(Integer.valueOf(3), order.getItems().get(copy), "get");
+  }
+}
+
+/*
+用途：驗證訂單的餐點查詢只讀取 MenuCatalog，不會把查詢用的餐點登錄進去。
+ */
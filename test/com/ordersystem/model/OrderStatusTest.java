@@ -0,0 +1,49 @@
+package com.ordersystem.model;
+
+import static com.ordersystem.Assert.assertEquals;
+import static com.ordersystem.Assert.assertFalse;
+import static com.ordersystem.Assert.assertTrue;
+import static com.ordersystem.Assert.fail;
+
+class OrderStatusTest {
+  // setStatus 接受合法的轉換，重複設定相同狀態不做事
+  static void testSetStatusAcceptsLegalTransitions() {
+    Order order = new Order(1);
+
+    order.setStatus(OrderStatus.PROCESSING);
+    order.setStatus(OrderStatus.PROCESSING);
+    order.setStatus(OrderStatus.COMPLETED);
+
+    assertEquals(OrderStatus.COMPLETED, order.getStatus(), "最終狀態");
+  }
+
+  // setStatus 遇到不合法的轉換丟出 IllegalStateException，狀態不變
+  static void testSetStatusRejectsIllegalTransitions() {
+    Order order = new Order(2);
+    order.setStatus(OrderStatus.CANCELLED);
+
+    try {
+      order.setStatus(OrderStatus.COMPLETED);
+      fail("已取消的訂單不能改為已完成");
+    } catch(IllegalStateException e) {
+      // 預期的例外
+    }
+
+    assertEquals(OrderStatus.CANCELLED, order.getStatus(), "狀態不變");
+    assertFalse(order.transitionTo(OrderStatus.COMPLETED), "transitionTo 回傳 false 而不是丟出例外");
+  }
+
+  // 載入訂單時使用 restoreStatus，不檢查轉換規則
+  static void testRestoreStatusSkipsRules() {
+    Order order = new Order(3);
+    order.setStatus(OrderStatus.CANCELLED);
+
+    order.restoreStatus(OrderStatus.WAITING);
+    assertEquals(OrderStatus.WAITING, order.getStatus(), "還原後的狀態");
+    assertTrue(order.transitionTo(OrderStatus.PROCESSING), "還原後可以繼續轉換");
+  }
+}
+
+/*
+用途：驗證訂單狀態的設定規則，以及 setStatus、transitionTo、restoreStatus 的差別。
+ */